@@ -0,0 +1,96 @@
+package com.ija.chess;
+
+import java.awt.Point;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.HashMap;
+
+// fixed corpus of positions used by the benchmarks.  Positions are reached by
+// replaying x,y coordinate moves from the starting position (or, for the endgame,
+// by placing the pieces directly) so that they do not depend on any other format.
+
+public final class BenchmarkPositions {
+	
+	public static final String OPENING = "opening";
+	public static final String MIDDLEGAME = "middlegame";
+	public static final String CHECK = "check";
+	public static final String ENDGAME = "endgame";
+	
+	// 1.e4 e5 2.Nf3 Nc6 3.Bb5 a6
+	private static final String[] openingMoves = {
+		"4,1", "4,3", "4,6", "4,4", "6,0", "5,2", "1,7", "2,5", "5,0", "1,4", "0,6", "0,5"
+	};
+	
+	// 1.e4 e5 2.Nf3 Nc6 3.Bc4 Bc5 4.c3 Nf6 5.d4 exd4 6.cxd4 Bb4+ (White is in check)
+	private static final String[] checkMoves = {
+		"4,1", "4,3", "4,6", "4,4", "6,0", "5,2", "1,7", "2,5", "5,0", "2,3", "5,7", "2,4",
+		"2,1", "2,2", "6,7", "5,5", "3,1", "3,3", "4,4", "3,3", "2,2", "3,3", "2,4", "1,3"
+	};
+	
+	// ... 7.Nc3 Nxe4 8.O-O Nxc3 9.bxc3 Bxc3
+	private static final String[] middlegameMoves = {
+		"1,0", "2,2", "5,5", "4,3", "4,0", "6,0", "4,3", "2,2", "1,1", "2,2", "1,3", "2,2"
+	};
+	
+	private BenchmarkPositions() {
+	}
+	
+	public static ChessMove load(String name) {
+		// set up a ChessMove (and its position) for one of the named corpus positions
+		PrintStream stdout = System.out;
+		System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+		try {
+			if (ENDGAME.equals(name)) {
+				return new ChessMove(endgamePosition(), new HashMap<ChessPiece, Point>(), ChessPieceColor.WHITE);
+			}
+			ChessMove mover = new ChessMove(ChessUtil.initBoard(), new HashMap<ChessPiece, Point>(), ChessPieceColor.WHITE);
+			if (OPENING.equals(name)) {
+				replay(mover, openingMoves);
+			}
+			else if (CHECK.equals(name)) {
+				replay(mover, checkMoves);
+			}
+			else if (MIDDLEGAME.equals(name)) {
+				replay(mover, checkMoves);
+				replay(mover, middlegameMoves);
+			}
+			else {
+				throw new IllegalArgumentException("Unknown benchmark position: " + name);
+			}
+			return mover;
+		} finally {
+			System.setOut(stdout);
+		}
+	}
+	
+	private static void replay(ChessMove mover, String[] moves) {
+		for (int i = 0; i < moves.length; i += 2) {
+			if (!mover.executeMove(ChessUtil.parseInputCoord(moves[i]), ChessUtil.parseInputCoord(moves[i + 1]))) {
+				throw new IllegalStateException("Benchmark move " + moves[i] + "-" + moves[i + 1] + " rejected: " + mover.getErrorList());
+			}
+		}
+	}
+	
+	private static ChessPosition endgamePosition() {
+		// rook and pawns each, kings castled short
+		ChessPosition position = new ChessPosition();
+		put(position, 6, 1, ChessPieceType.KING, ChessPieceColor.WHITE);
+		put(position, 3, 0, ChessPieceType.ROOK, ChessPieceColor.WHITE);
+		put(position, 5, 1, ChessPieceType.PAWN, ChessPieceColor.WHITE);
+		put(position, 6, 2, ChessPieceType.PAWN, ChessPieceColor.WHITE);
+		put(position, 7, 1, ChessPieceType.PAWN, ChessPieceColor.WHITE);
+		put(position, 6, 7, ChessPieceType.KING, ChessPieceColor.BLACK);
+		put(position, 3, 7, ChessPieceType.ROOK, ChessPieceColor.BLACK);
+		put(position, 5, 6, ChessPieceType.PAWN, ChessPieceColor.BLACK);
+		put(position, 6, 6, ChessPieceType.PAWN, ChessPieceColor.BLACK);
+		put(position, 7, 5, ChessPieceType.PAWN, ChessPieceColor.BLACK);
+		return position;
+	}
+	
+	private static void put(ChessPosition position, int x, int y, ChessPieceType type, ChessPieceColor color) {
+		ChessPiece piece = new ChessPiece(type, color);
+		piece.setNumberOfMoves(1);
+		position.putPiece(ChessPosition.square(x, y), piece);
+	}
+
+}
@@ -0,0 +1,115 @@
+package com.ija.chess;
+
+import java.awt.Point;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// throughput of the rule checking hot paths over the BenchmarkPositions corpus.
+// validateMove cycles through every (own piece, target square) pair of the position
+// so that accepted and rejected moves are both measured; movePutsKingInCheck cycles
+// through the legal moves of the position.
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChessMoveBenchmark {
+	
+	@Param({BenchmarkPositions.OPENING, BenchmarkPositions.MIDDLEGAME, BenchmarkPositions.CHECK, BenchmarkPositions.ENDGAME})
+	public String positionName;
+	
+	private ChessMove mover;
+	private Point kingLocation;
+	private Point[] candidateFrom;
+	private Point[] candidateTo;
+	private int[] legalMoves;
+	private MoveBuffer moveBuffer = new MoveBuffer();
+	private int candidateIndex = 0;
+	private int legalIndex = 0;
+	private PrintStream stdout;
+	
+	@Setup(Level.Trial)
+	public void setUp() {
+		mover = BenchmarkPositions.load(positionName);
+		ChessPosition position = mover.getPosition();
+		kingLocation = ChessPosition.toPoint(position.kingSquare(mover.getCurrentColor()));
+		long own = position.occupancy(mover.getCurrentColor());
+		int count = Long.bitCount(own) * 64;
+		candidateFrom = new Point[count];
+		candidateTo = new Point[count];
+		int i = 0;
+		while (own != 0L) {
+			int from = Long.numberOfTrailingZeros(own);
+			own &= own - 1;
+			for (int to = 0; to < 64; to++) {
+				candidateFrom[i] = ChessPosition.toPoint(from);
+				candidateTo[i++] = ChessPosition.toPoint(to);
+			}
+		}
+		mover.generateLegalMoves(moveBuffer);
+		legalMoves = new int[moveBuffer.size()];
+		for (int m = 0; m < legalMoves.length; m++) {
+			legalMoves[m] = moveBuffer.get(m);
+		}
+		// showBoard writes to the console; discard it while benchmarking
+		stdout = System.out;
+		System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+	}
+	
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		System.setOut(stdout);
+	}
+	
+	@Benchmark
+	public boolean validateMove() {
+		int i = candidateIndex;
+		candidateIndex = (i + 1 == candidateFrom.length) ? 0 : i + 1;
+		return mover.validateMove(candidateFrom[i], candidateTo[i]);
+	}
+	
+	@Benchmark
+	public boolean kingInCheck() {
+		return mover.kingInCheck(kingLocation);
+	}
+	
+	@Benchmark
+	public boolean movePutsKingInCheck() {
+		int i = legalIndex;
+		legalIndex = (i + 1 == legalMoves.length) ? 0 : i + 1;
+		return mover.movePutsKingInCheck(MoveCode.from(legalMoves[i]), MoveCode.to(legalMoves[i]), false);
+	}
+	
+	@Benchmark
+	public boolean kingCheckMated() {
+		return mover.kingCheckMated(kingLocation);
+	}
+	
+	@Benchmark
+	public int generateLegalMoves() {
+		return mover.generateLegalMoves(moveBuffer);
+	}
+	
+	@Benchmark
+	public void showBoard() {
+		ChessUtil.showBoard(mover.getBoard());
+	}
+
+}
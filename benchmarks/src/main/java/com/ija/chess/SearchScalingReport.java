@@ -0,0 +1,32 @@
+package com.ija.chess;
+
+// reports how the engine's parallel (Lazy SMP) search scales with the number of
+// threads: for every corpus position and thread count it searches for a fixed time
+// and prints the depth reached and nodes/sec.  Run with
+//   java -cp benchmarks/target/benchmarks.jar com.ija.chess.SearchScalingReport [millis] [maxThreads]
+
+public class SearchScalingReport {
+	
+	private static final String[] positions = {
+		BenchmarkPositions.OPENING, BenchmarkPositions.MIDDLEGAME, BenchmarkPositions.CHECK, BenchmarkPositions.ENDGAME
+	};
+	
+	public static void main(String[] args) {
+		long millis = (args.length > 0) ? Long.parseLong(args[0]) : 2000;
+		int maxThreads = (args.length > 1) ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+		System.out.println(String.format("%-12s %8s %6s %14s %14s %14s", "position", "threads", "depth", "nodes", "nodes/sec", "nodes/sec/thr"));
+		for (String name : positions) {
+			for (int threads = 1; threads <= maxThreads; threads *= 2) {
+				ChessEngine engine = new ChessEngine(BenchmarkPositions.load(name).getPosition());
+				engine.setThreads(threads);
+				long start = System.nanoTime();
+				engine.findBestMove(millis);
+				double seconds = (System.nanoTime() - start) / 1e9;
+				long nps = (long) (engine.getNodes() / seconds);
+				System.out.println(String.format("%-12s %8d %6d %14d %14d %14d", name, threads, engine.getCompletedDepth(),
+						engine.getNodes(), nps, nps / threads));
+			}
+		}
+	}
+
+}
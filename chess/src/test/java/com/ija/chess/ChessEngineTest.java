@@ -0,0 +1,51 @@
+package com.ija.chess;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.time.Duration;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+import org.junit.jupiter.api.function.ThrowingSupplier;
+
+// stopping a search: a stop request made before the search begins must still end it,
+// both through the engine API and through the UCI front end
+
+public class ChessEngineTest {
+
+	@Test
+	public void stopBeforeTheSearchEndsIt() {
+		final ChessEngine engine = new ChessEngine(ChessFen.parse(ChessFen.INITIAL_POSITION));
+		engine.stop();
+		// without a time limit or depth only the stop request can end this search
+		int move = assertTimeoutPreemptively(Duration.ofSeconds(10), new ThrowingSupplier<Integer>() {
+			public Integer get() {
+				return engine.findBestMove(0, ChessEngine.MAX_DEPTH);
+			}
+		});
+		assertNotEquals(ChessEngine.NO_MOVE, move);
+		// the request was used up by that search; the next one runs to its depth
+		engine.findBestMove(0, 2);
+		assertEquals(2, engine.getCompletedDepth());
+	}
+
+	@Test
+	public void uciStopRightAfterGoReportsABestMove() {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		final UciProtocol uci = new UciProtocol(new PrintStream(output, true), 1);
+		assertTimeoutPreemptively(Duration.ofSeconds(10), new Executable() {
+			public void execute() {
+				uci.handle("position startpos moves e2e4");
+				uci.handle("go infinite");
+				uci.handle("stop");
+			}
+		});
+		assertTrue(output.toString().contains("bestmove "), output.toString());
+	}
+
+}
@@ -0,0 +1,103 @@
+package com.ija.chess;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+// the precomputed geometry tables against the same sets found by walking the board
+// step by step in coordinates
+
+public class ChessTablesTest {
+
+	private static final int[][] ROOK_STEPS = {{1, 0}, {-1, 0}, {0, 1}, {0, -1}};
+	private static final int[][] BISHOP_STEPS = {{1, 1}, {1, -1}, {-1, 1}, {-1, -1}};
+
+	@Test
+	public void slidingAttacksMatchWalkedRays() {
+		Random random = new Random(18);
+		for (int i = 0; i < 2000; i++) {
+			// sparse and dense occupancies alike
+			long occupied = random.nextLong() & random.nextLong() & ((i % 2 == 0) ? random.nextLong() : -1L);
+			for (int square = 0; square < 64; square++) {
+				assertEquals(walk(square, occupied, ROOK_STEPS), ChessTables.rookAttacks(square, occupied), "Rook on " + square);
+				assertEquals(walk(square, occupied, BISHOP_STEPS), ChessTables.bishopAttacks(square, occupied), "Bishop on " + square);
+			}
+		}
+	}
+
+	@Test
+	public void betweenAndLineMatchWalkedRays() {
+		for (int from = 0; from < 64; from++) {
+			for (int to = 0; to < 64; to++) {
+				int dx = ChessPosition.fileOf(to) - ChessPosition.fileOf(from);
+				int dy = ChessPosition.rankOf(to) - ChessPosition.rankOf(from);
+				int line = ChessTables.NO_LINE;
+				long between = 0L;
+				if (from != to && (dx == 0 || dy == 0)) {
+					line = ChessTables.ORTHOGONAL;
+				}
+				else if (from != to && Math.abs(dx) == Math.abs(dy)) {
+					line = ChessTables.DIAGONAL;
+				}
+				if (line != ChessTables.NO_LINE) {
+					int steps = Math.max(Math.abs(dx), Math.abs(dy));
+					for (int step = 1; step < steps; step++) {
+						between |= 1L << ChessPosition.square(ChessPosition.fileOf(from) + Integer.signum(dx) * step,
+								ChessPosition.rankOf(from) + Integer.signum(dy) * step);
+					}
+				}
+				assertEquals(line, ChessTables.line(from, to), from + "-" + to);
+				assertEquals(between, ChessTables.between(from, to), from + "-" + to);
+			}
+		}
+	}
+
+	@Test
+	public void leaperAttacksMatchOffsets() {
+		int[][] kingSteps = {{1, 0}, {1, 1}, {0, 1}, {-1, 1}, {-1, 0}, {-1, -1}, {0, -1}, {1, -1}};
+		int[][] knightSteps = {{1, 2}, {2, 1}, {2, -1}, {1, -2}, {-1, -2}, {-2, -1}, {-2, 1}, {-1, 2}};
+		for (int square = 0; square < 64; square++) {
+			assertEquals(step(square, kingSteps), ChessTables.KING_ATTACKS[square], "King on " + square);
+			assertEquals(step(square, knightSteps), ChessTables.KNIGHT_ATTACKS[square], "Knight on " + square);
+			assertEquals(step(square, new int[][] {{1, 1}, {-1, 1}}),
+					ChessTables.PAWN_ATTACKS[ChessPieceColor.WHITE.ordinal()][square], "white Pawn on " + square);
+			assertEquals(step(square, new int[][] {{1, -1}, {-1, -1}}),
+					ChessTables.PAWN_ATTACKS[ChessPieceColor.BLACK.ordinal()][square], "black Pawn on " + square);
+		}
+	}
+
+	private static long walk(int square, long occupied, int[][] steps) {
+		// every square reached stepping in each direction until the edge or an occupied square (included)
+		long attacks = 0L;
+		for (int[] s : steps) {
+			int x = ChessPosition.fileOf(square) + s[0];
+			int y = ChessPosition.rankOf(square) + s[1];
+			while (ChessPosition.onBoard(x, y)) {
+				int target = ChessPosition.square(x, y);
+				attacks |= 1L << target;
+				if ((occupied & (1L << target)) != 0L) {
+					break;
+				}
+				x += s[0];
+				y += s[1];
+			}
+		}
+		return attacks;
+	}
+
+	private static long step(int square, int[][] steps) {
+		// the squares one step away that are on the board
+		long targets = 0L;
+		for (int[] s : steps) {
+			int x = ChessPosition.fileOf(square) + s[0];
+			int y = ChessPosition.rankOf(square) + s[1];
+			if (ChessPosition.onBoard(x, y)) {
+				targets |= 1L << ChessPosition.square(x, y);
+			}
+		}
+		return targets;
+	}
+
+}
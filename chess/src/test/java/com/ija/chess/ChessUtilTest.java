@@ -0,0 +1,66 @@
+package com.ija.chess;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.awt.Point;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+// the coordinate and piece formats the menu and the move scripts rely on
+
+public class ChessUtilTest {
+
+	@Test
+	public void parsesCoordinates() {
+		assertEquals(new Point(4, 1), ChessUtil.parseInputCoord("4,1"));
+		assertEquals(new Point(0, 7), ChessUtil.parseInputCoord("0,7"));
+		assertNull(ChessUtil.parseInputCoord("4-1"));
+		assertNull(ChessUtil.parseInputCoord("41"));
+		assertNull(ChessUtil.parseInputCoord("x,1"));
+		assertNull(ChessUtil.parseInputCoord(null));
+	}
+
+	@Test
+	public void parsesMoves() {
+		assertArrayEquals(new Point[] {new Point(4, 1), new Point(4, 3)}, ChessUtil.parseInputMove("4,1-4,3"));
+		assertArrayEquals(new Point[] {new Point(4, 1), new Point(4, 3)}, ChessUtil.parseInputMove("4,1 4,3"));
+		assertNull(ChessUtil.parseInputMove("4,1-4,8"));
+		assertNull(ChessUtil.parseInputMove("4,1-4,3x"));
+		assertNull(ChessUtil.parseInputMove("4,1"));
+		assertNull(ChessUtil.parseInputMove(null));
+		// a script of moves is read move by move into the same points
+		Point current = new Point();
+		Point target = new Point();
+		String script = "4,1-4,3  4,6 4,4";
+		int pos = ChessUtil.readMove(script, 0, current, target);
+		assertEquals(7, pos);
+		pos = ChessUtil.readMove(script, ChessUtil.skipSpace(script, pos), current, target);
+		assertEquals(script.length(), pos);
+		assertEquals(new Point(4, 6), current);
+		assertEquals(new Point(4, 4), target);
+	}
+
+	@Test
+	public void formatsPieces() {
+		assertEquals("W-Q", ChessUtil.shortFormatChessPiece(new ChessPiece(ChessPieceType.QUEEN, ChessPieceColor.WHITE)));
+		assertEquals("BKn", ChessUtil.shortFormatChessPiece(new ChessPiece(ChessPieceType.KNIGHT, ChessPieceColor.BLACK)));
+		assertEquals("BKi", ChessUtil.shortFormatChessPiece(new ChessPiece(ChessPieceType.KING, ChessPieceColor.BLACK)));
+		assertEquals("White Rook", ChessUtil.longFormatChessPiece(new ChessPiece(ChessPieceType.ROOK, ChessPieceColor.WHITE)));
+		assertEquals('N', ChessUtil.pieceLetter(new ChessPiece(ChessPieceType.KNIGHT, ChessPieceColor.WHITE)));
+		assertEquals('k', ChessUtil.pieceLetter(new ChessPiece(ChessPieceType.KING, ChessPieceColor.BLACK)));
+		assertEquals('p', ChessUtil.pieceLetter(new ChessPiece(ChessPieceType.PAWN, ChessPieceColor.BLACK)));
+	}
+
+	@Test
+	public void setsUpTheInitialBoard() {
+		Map<Point, ChessPiece> board = ChessUtil.initBoard();
+		assertEquals(32, board.size());
+		assertEquals(ChessPieceType.KING, board.get(new Point(4, 0)).getType());
+		assertEquals(ChessPieceColor.BLACK, board.get(new Point(3, 7)).getColor());
+		assertEquals(ChessPieceType.PAWN, board.get(new Point(6, 6)).getType());
+	}
+
+}
@@ -0,0 +1,78 @@
+package com.ija.chess;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+// games written to a GameArchive and read back move by move, from the initial position
+// and from FEN positions with castling and promotions close at hand
+
+public class GameArchiveTest {
+
+	private static final String[] STARTS = {
+		ChessFen.INITIAL_POSITION,
+		"r3k2r/pppq1ppp/2n2n2/3pp3/3PP3/2N2N2/PPPQ1PPP/R3K2R w KQkq - 0 8",
+		"4k3/1P4P1/8/8/8/8/1p4p1/4K3 w - - 0 40",
+	};
+
+	@TempDir
+	File directory;
+
+	@Test
+	public void gamesReadBackAsWritten() throws IOException {
+		Random random = new Random(14);
+		MoveBuffer moves = new MoveBuffer();
+		int games = 150;
+		int[][] recorded = new int[games][];
+		long totalMoves = 0;
+		File file = new File(directory, "games.cga");
+		GameArchiveWriter writer = new GameArchiveWriter(file);
+		for (int game = 0; game < games; game++) {
+			String fen = STARTS[game % STARTS.length];
+			ChessPosition position = ChessFen.parse(fen);
+			ChessMove mover = MoveGeneratorTest.moverFor(position);
+			writer.beginGame(fen);
+			int[] played = new int[200];
+			int count = 0;
+			while (count < played.length && mover.generateLegalMoves(moves) > 0) {
+				int move = moves.get(random.nextInt(moves.size()));
+				writer.recordMove(move);
+				played[count++] = move;
+				position.makeMove(move);
+				position.clearUndoHistory();
+			}
+			writer.endGame(GameArchive.DRAW);
+			recorded[game] = Arrays.copyOf(played, count);
+			totalMoves += count;
+		}
+		writer.close();
+
+		GameArchiveReader reader = new GameArchiveReader(file);
+		int game = 0;
+		while (reader.nextGame()) {
+			assertEquals(STARTS[game % STARTS.length], reader.getStartFen());
+			assertEquals(GameArchive.DRAW, reader.getResult());
+			assertEquals(recorded[game].length, reader.getMoveCount());
+			ChessPosition replayed = ChessFen.parse(reader.getStartFen());
+			for (int i = 0; i < recorded[game].length; i++) {
+				assertEquals(recorded[game][i], reader.nextMove(), "game " + game + " move " + i);
+				replayed.makeMove(recorded[game][i]);
+			}
+			assertEquals(ChessEngine.NO_MOVE, reader.nextMove());
+			assertEquals(ChessFen.format(replayed), ChessFen.format(reader.getPosition()));
+			game++;
+		}
+		reader.close();
+		assertEquals(games, game);
+		// one byte per move, besides the block headers and start FENs
+		assertTrue(file.length() < GameArchive.HEADER_SIZE + totalMoves + games * 80L, file.length() + " bytes");
+	}
+
+}
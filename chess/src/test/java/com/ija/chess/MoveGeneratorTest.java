@@ -0,0 +1,127 @@
+package com.ija.chess;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.Point;
+import java.util.HashMap;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+// the legal move generator against known move counts (perft) and against the
+// rules as validateMove applies them, square pair by square pair
+
+public class MoveGeneratorTest {
+
+	static ChessMove moverFor(ChessPosition position) {
+		return new ChessMove(position, new HashMap<ChessPiece, Point>(), position.getSideToMove());
+	}
+
+	static long perft(ChessPosition position, ChessMove mover, MoveBuffer[] buffers, int depth) {
+		// the number of move sequences of length depth from the position
+		MoveBuffer moves = buffers[depth];
+		mover.generateLegalMoves(moves);
+		if (depth == 1) {
+			return moves.size();
+		}
+		long total = 0;
+		for (int i = 0; i < moves.size(); i++) {
+			position.makeMove(moves.get(i));
+			total += perft(position, mover, buffers, depth - 1);
+			position.unmakeMove();
+		}
+		return total;
+	}
+
+	@Test
+	public void perftFromTheInitialPosition() {
+		// the standard counts; en passant (first possible at depth 5) is not in the rules
+		ChessPosition position = ChessFen.parse(ChessFen.INITIAL_POSITION);
+		ChessMove mover = moverFor(position);
+		MoveBuffer[] buffers = new MoveBuffer[6];
+		for (int i = 0; i < buffers.length; i++) {
+			buffers[i] = new MoveBuffer();
+		}
+		long[] expected = {0, 20, 400, 8902, 197281};
+		for (int depth = 1; depth < expected.length; depth++) {
+			assertEquals(expected[depth], perft(position, mover, buffers, depth), "perft " + depth);
+		}
+		assertEquals(ChessFen.INITIAL_POSITION, ChessFen.format(position));
+	}
+
+	@Test
+	public void generatorAgreesWithValidateMove() {
+		// in positions of seeded random games, a from/to pair is generated exactly when validateMove accepts it
+		Random random = new Random(2);
+		MoveBuffer moves = new MoveBuffer();
+		for (int game = 0; game < 40; game++) {
+			ChessPosition position = ChessFen.parse(ChessFen.INITIAL_POSITION);
+			ChessMove mover = moverFor(position);
+			for (int ply = 0; ply < 120; ply++) {
+				mover.generateLegalMoves(moves);
+				assertAgrees(position, mover, moves);
+				if (moves.isEmpty()) {
+					break;
+				}
+				position.makeMove(moves.get(random.nextInt(moves.size())));
+				position.clearUndoHistory();
+			}
+		}
+	}
+
+	@Test
+	public void castlingBlocksACheckAlongTheHomeRank() {
+		// the black Rook on b1 checks the King; castling kingside puts the white Rook on f1, between
+		// the two, and every other move leaves the King in check, so it is the only legal move
+		ChessPosition position = ChessFen.parse("k7/8/8/8/8/3ppp2/3PPP2/1r2K2R w K - 0 1");
+		ChessMove mover = moverFor(position);
+		MoveBuffer moves = new MoveBuffer();
+		assertEquals(1, mover.generateLegalMoves(moves));
+		assertEquals(MoveCode.encode(ChessPosition.square(4, 0), ChessPosition.square(6, 0), MoveCode.CASTLE), moves.get(0));
+		assertTrue(mover.hasLegalMove());
+		assertEquals(GameStatus.ONGOING, mover.gameStatus());
+		assertAgrees(position, mover, moves);
+	}
+
+	@Test
+	public void hasLegalMoveAgreesWithTheGenerator() {
+		// through seeded random games, including castles with the home rank under attack
+		Random random = new Random(19);
+		MoveBuffer moves = new MoveBuffer();
+		for (int game = 0; game < 300; game++) {
+			ChessPosition position = ChessFen.parse(ChessFen.INITIAL_POSITION);
+			ChessMove mover = moverFor(position);
+			for (int ply = 0; ply < 200; ply++) {
+				mover.generateLegalMoves(moves);
+				assertEquals(!moves.isEmpty(), mover.hasLegalMove(), ChessFen.format(position));
+				if (moves.isEmpty()) {
+					break;
+				}
+				position.makeMove(moves.get(random.nextInt(moves.size())));
+				position.clearUndoHistory();
+			}
+		}
+	}
+
+	static void assertAgrees(ChessPosition position, ChessMove mover, MoveBuffer moves) {
+		long[] generated = new long[64];
+		for (int i = 0; i < moves.size(); i++) {
+			generated[MoveCode.from(moves.get(i))] |= 1L << MoveCode.to(moves.get(i));
+		}
+		long own = position.occupancy(position.getSideToMove());
+		String fen = ChessFen.format(position);
+		for (int from = 0; from < 64; from++) {
+			if ((own & (1L << from)) == 0L) {
+				assertEquals(0L, generated[from], fen);
+				continue;
+			}
+			for (int to = 0; to < 64; to++) {
+				boolean valid = mover.validateMove(ChessPosition.toPoint(from), ChessPosition.toPoint(to));
+				assertEquals(valid, (generated[from] & (1L << to)) != 0L,
+						fen + " " + ChessUtil.formatSquare(from) + "-" + ChessUtil.formatSquare(to));
+			}
+		}
+	}
+
+}
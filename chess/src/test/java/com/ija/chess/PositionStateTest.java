@@ -0,0 +1,117 @@
+package com.ija.chess;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+// the state ChessPosition keeps up to date move by move (attack counts and attacked
+// squares, piece lists, King squares) against the same state computed from scratch, through
+// seeded random games of moves made and taken back
+
+public class PositionStateTest {
+
+	@Test
+	public void incrementalStateMatchesRecomputedState() {
+		Random random = new Random(5);
+		MoveBuffer moves = new MoveBuffer();
+		for (int game = 0; game < 200; game++) {
+			ChessPosition position = ChessFen.parse(ChessFen.INITIAL_POSITION);
+			ChessMove mover = MoveGeneratorTest.moverFor(position);
+			for (int ply = 0; ply < 150; ply++) {
+				assertMatchesRecomputed(position);
+				mover.generateLegalMoves(moves);
+				if (moves.isEmpty()) {
+					break;
+				}
+				if (ply > 0 && random.nextInt(4) == 0) {
+					// take a move back now and then, so unmakeMove is checked as well
+					position.unmakeMove();
+					assertMatchesRecomputed(position);
+					mover.generateLegalMoves(moves);
+				}
+				position.makeMove(moves.get(random.nextInt(moves.size())));
+			}
+		}
+	}
+
+	@Test
+	public void takingEveryMoveBackRestoresTheStart() {
+		// a long game without clearUndoHistory() grows the undo stack several times over
+		Random random = new Random(4);
+		MoveBuffer moves = new MoveBuffer();
+		ChessPosition position = ChessFen.parse(ChessFen.INITIAL_POSITION);
+		ChessMove mover = MoveGeneratorTest.moverFor(position);
+		long startKey = position.positionKey();
+		while (position.getPly() < 300 && mover.generateLegalMoves(moves) > 0) {
+			position.makeMove(moves.get(random.nextInt(moves.size())));
+		}
+		while (position.getPly() > 0) {
+			position.unmakeMove();
+		}
+		assertEquals(ChessFen.INITIAL_POSITION, ChessFen.format(position));
+		assertEquals(startKey, position.positionKey());
+		assertMatchesRecomputed(position);
+	}
+
+	@Test
+	public void twoSquarePawnAdvanceKeysLikeTwoOneSquareAdvances() {
+		// there is no en passant, so the square a Pawn skipped (next to an opposing Pawn here)
+		// does not make a position different, and coming back to it is a repetition
+		ChessPosition position = ChessFen.parse("4k3/8/8/8/1p6/8/P7/4K3 w - - 0 1");
+		position.makeMove(MoveCode.encode(ChessPosition.square(0, 1), ChessPosition.square(0, 3), MoveCode.DOUBLE_PAWN_PUSH));
+		ChessPosition stepped = ChessFen.parse("4k3/8/8/8/1p6/P7/8/4K3 w - - 0 1");
+		stepped.makeMove(MoveCode.encode(ChessPosition.square(0, 2), ChessPosition.square(0, 3), MoveCode.NONE));
+		assertEquals(stepped.positionKey(), position.positionKey());
+		assertEquals(ChessFen.parse("4k3/8/8/8/Pp6/8/8/4K3 b - - 0 1").positionKey(), position.positionKey());
+
+		int[][] kingSteps = {{4, 7, 4, 6}, {4, 0, 4, 1}, {4, 6, 4, 7}, {4, 1, 4, 0}};
+		for (int[] step : kingSteps) {
+			position.makeMove(MoveCode.encode(ChessPosition.square(step[0], step[1]), ChessPosition.square(step[2], step[3]), MoveCode.NONE));
+		}
+		assertEquals(1, position.repetitions());
+	}
+
+	static void assertMatchesRecomputed(ChessPosition position) {
+		String fen = ChessFen.format(position);
+		for (ChessPieceColor color : ChessPieceColor.values()) {
+			long attacked = 0L;
+			long pieces = 0L;
+			int[] counts = new int[64];
+			for (int square = 0; square < 64; square++) {
+				ChessPiece piece = position.pieceAt(square);
+				if (piece != null && piece.getColor().equals(color)) {
+					long attacks = position.attacksFrom(square, piece.getType(), color, position.occupancy());
+					attacked |= attacks;
+					pieces |= 1L << square;
+					for (int target = 0; target < 64; target++) {
+						if ((attacks & (1L << target)) != 0L) {
+							counts[target]++;
+						}
+					}
+				}
+			}
+			for (int square = 0; square < 64; square++) {
+				assertEquals(counts[square], position.attackCount(square, color),
+						fen + " attackers of " + ChessUtil.formatSquare(square) + " by " + color);
+			}
+			assertEquals(attacked, position.attackedSquares(color), fen + " attacks of " + color);
+			assertEquals(pieces, position.occupancy(color), fen + " occupancy of " + color);
+			long listed = 0L;
+			for (int i = 0; i < position.pieceCount(color); i++) {
+				listed |= 1L << position.pieceSquare(color, i);
+			}
+			assertEquals(Long.bitCount(pieces), position.pieceCount(color), fen + " piece count of " + color);
+			assertEquals(pieces, listed, fen + " piece list of " + color);
+			assertEquals(Long.numberOfTrailingZeros(position.pieces(color, ChessPieceType.KING)), position.kingSquare(color), fen);
+		}
+		// a position set up afresh from the same FEN has the same attacked squares and key
+		ChessPosition fresh = ChessFen.parse(fen);
+		assertEquals(fresh.positionKey(), position.positionKey(), fen);
+		for (ChessPieceColor color : ChessPieceColor.values()) {
+			assertEquals(fresh.attackedSquares(color), position.attackedSquares(color), fen);
+		}
+	}
+
+}
@@ -0,0 +1,74 @@
+package com.ija.chess;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+// generated tablebases against known results: the longest forced mates of the basic
+// endgames and a few positions probed through ChessFen
+
+public class TablebaseTest {
+
+	@TempDir
+	File directory;
+
+	@Test
+	public void queenAndRookEndgames() throws IOException {
+		Tablebases tablebases = generate("KQK", "KRK");
+		assertEquals(10, longestMate("KQK"));
+		assertEquals(16, longestMate("KRK"));
+
+		// mate in one (Qg7), the mate itself, and the same with the colors swapped
+		assertProbe(tablebases, "7k/Q7/5K2/8/8/8/8/8 w - - 0 1", Tablebases.WIN, 1, "White wins in 1 move");
+		assertProbe(tablebases, "7k/6Q1/5K2/8/8/8/8/8 b - - 0 1", Tablebases.LOSS, 0, "Black is checkmated");
+		assertProbe(tablebases, "8/8/8/8/8/5k2/q7/7K b - - 0 1", Tablebases.WIN, 1, "Black wins in 1 move");
+		// the black King takes the unprotected Rook
+		assertProbe(tablebases, "8/8/8/8/8/8/1k6/R6K b - - 0 1", Tablebases.DRAW, 0, "Draw");
+		// no probe while castling rights remain
+		assertEquals(Tablebases.NOT_FOUND, tablebases.probe(ChessFen.parse("4k3/8/8/8/8/8/8/R3K3 w Q - 0 1")));
+	}
+
+	@Test
+	public void bishopAndKnightEndgame() throws IOException {
+		generate("KBNK");
+		assertEquals(33, longestMate("KBNK"));
+	}
+
+	private Tablebases generate(String... materials) throws IOException {
+		Tablebases tablebases = new Tablebases(directory);
+		TablebaseGenerator generator = new TablebaseGenerator(tablebases, 2, new PrintStream(new ByteArrayOutputStream()));
+		for (String material : materials) {
+			generator.generate(material);
+		}
+		return tablebases;
+	}
+
+	private int longestMate(String material) throws IOException {
+		// the largest distance to mate of a won position in the table file
+		byte[] table = Files.readAllBytes(new File(directory, material + ".tb").toPath());
+		int longest = 0;
+		for (int i = Tablebases.HEADER_SIZE; i < table.length; i++) {
+			int result = table[i] & 0xFF;
+			if (Tablebases.outcome(result) == Tablebases.WIN) {
+				longest = Math.max(longest, Tablebases.distanceToMateMoves(result));
+			}
+		}
+		return longest;
+	}
+
+	private static void assertProbe(Tablebases tablebases, String fen, int outcome, int moves, String description) {
+		ChessPosition position = ChessFen.parse(fen);
+		int result = tablebases.probe(position);
+		assertEquals(outcome, Tablebases.outcome(result), fen);
+		assertEquals(moves, Tablebases.distanceToMateMoves(result), fen);
+		assertEquals(description, Tablebases.describe(result, position.getSideToMove()), fen);
+	}
+
+}
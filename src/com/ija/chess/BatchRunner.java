@@ -0,0 +1,136 @@
+package com.ija.chess;
+
+import java.awt.Point;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.util.HashMap;
+
+// headless replay of move scripts: no prompts and no board printing.  Every non-blank
+// input line is one game from the initial position, written as moves "x,y-x,y" (or
+// coordinate pairs "x,y x,y") separated by white space; text after '#' is a comment.
+// Each move is checked by the same ChessMove rules as interactive play and reported
+// on one line
+//   <game> <ply> <move> ok | check | checkmate | stalemate | illegal <errors>
+// An illegal move ends its game (the rest of that line is not played).  After the last
+// game one summary line gives the totals and the replay speed.
+
+public class BatchRunner {
+
+	private final PrintStream out;
+	private final StringBuilder line = new StringBuilder(128);
+	private final Point current = new Point();
+	private final Point target = new Point();
+
+	private long games = 0;
+	private long moves = 0;
+	private long illegalMoves = 0;
+	private long checkmates = 0;
+	private long stalemates = 0;
+
+	public BatchRunner(PrintStream out) {
+		this.out = out;
+	}
+
+	public long getGames() {
+		return games;
+	}
+
+	public long getMoves() {
+		return moves;
+	}
+
+	public long getIllegalMoves() {
+		return illegalMoves;
+	}
+
+	public void run(Reader in) throws IOException {
+		// replay every game of the input, then print the summary
+		long startNanos = System.nanoTime();
+		BufferedReader reader = new BufferedReader(in, 1 << 16);
+		String gameLine;
+		while ((gameLine = reader.readLine()) != null) {
+			int comment = gameLine.indexOf('#');
+			if (comment >= 0) {
+				gameLine = gameLine.substring(0, comment);
+			}
+			if (gameLine.trim().length() > 0) {
+				playGame(gameLine);
+			}
+		}
+		long millis = (System.nanoTime() - startNanos) / 1000000L;
+		out.println("summary games " + games + " moves " + moves + " illegal " + illegalMoves +
+				" checkmates " + checkmates + " stalemates " + stalemates + " millis " + millis +
+				" moves/s " + (moves * 1000L / Math.max(1L, millis)));
+		out.flush();
+	}
+
+	private void playGame(String gameLine) {
+		games++;
+		ChessPosition position = ChessPosition.fromBoardMap(ChessUtil.initBoard());
+		ChessMove mover = new ChessMove(position, new HashMap<ChessPiece, Point>(), ChessPieceColor.WHITE);
+		int ply = 0;
+		int pos = 0;
+		int length = gameLine.length();
+		while (true) {
+			pos = ChessUtil.skipSpace(gameLine, pos);
+			if (pos >= length) {
+				return;
+			}
+			ply++;
+			int start = pos;
+			pos = ChessUtil.readMove(gameLine, pos, current, target);
+			if (pos < 0 || (pos < length && !Character.isWhitespace(gameLine.charAt(pos)))) {
+				int end = start;
+				while (end < length && !Character.isWhitespace(gameLine.charAt(end))) {
+					end++;
+				}
+				illegalMoves++;
+				report(ply).append(gameLine, start, end).append(" illegal invalid coordinate");
+				endLine();
+				return;
+			}
+			moves++;
+			StringBuilder result = report(ply).append(current.x).append(',').append(current.y).append('-')
+					.append(target.x).append(',').append(target.y);
+			if (!mover.executeMove(current, target)) {
+				illegalMoves++;
+				result.append(" illegal");
+				for (String errorStr : mover.getErrorList()) {
+					result.append(' ').append(errorStr);
+				}
+				endLine();
+				return;
+			}
+			// the side now to move is mated or stalemated exactly when it has no legal move
+			ChessPieceColor sideToMove = position.getSideToMove();
+			ChessPieceColor opponent = sideToMove.equals(ChessPieceColor.WHITE) ? ChessPieceColor.BLACK : ChessPieceColor.WHITE;
+			int kingSquare = position.kingSquare(sideToMove);
+			boolean check = kingSquare != ChessPosition.NO_SQUARE && position.isSquareAttacked(kingSquare, opponent);
+			if (!mover.hasLegalMove()) {
+				if (check) {
+					checkmates++;
+					result.append(" checkmate");
+				} else {
+					stalemates++;
+					result.append(" stalemate");
+				}
+				endLine();
+				return;
+			}
+			result.append(check ? " check" : " ok");
+			endLine();
+		}
+	}
+
+	private StringBuilder report(int ply) {
+		line.setLength(0);
+		return line.append(games).append(' ').append(ply).append(' ');
+	}
+
+	private void endLine() {
+		out.append(line).append('\n');
+	}
+
+}
@@ -0,0 +1,249 @@
+package com.ija.chess;
+
+import java.awt.Point;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+// draws the board for ChessUtil.showBoard.  A frame is built into one reusable byte
+// buffer and written to the stream with a single write and flush; the cell texts are
+// prepared once, so drawing allocates nothing.
+// In ANSI mode (for terminals) the first frame is drawn at the top of a cleared screen
+// and the lines below it are made the scrolling region, so the board stays in place
+// while the game's other output scrolls underneath.  Later frames only move the cursor
+// to the squares whose piece changed since the last frame and redraw those cells, which
+// is a few dozen bytes per move instead of the whole board.
+
+public class BoardRenderer {
+
+	private static final int FRAME_LINES = 16;
+	// screen line of rank 7 and screen column of file 0 in a frame (1-based, as ANSI counts)
+	private static final int FIRST_RANK_LINE = 7;
+	private static final int FIRST_FILE_COLUMN = 3;
+	// escape sequences: control sequence introducer, clear screen, cursor home, reset the
+	// scrolling region, save and restore the cursor
+	private static final byte[] ESC = "\u001b[".getBytes(StandardCharsets.US_ASCII);
+	private static final byte[] CLEAR_SCREEN = "\u001b[2J".getBytes(StandardCharsets.US_ASCII);
+	private static final byte[] CURSOR_HOME = "\u001b[H".getBytes(StandardCharsets.US_ASCII);
+	private static final byte[] FULL_SCROLL_REGION = "\u001b[r".getBytes(StandardCharsets.US_ASCII);
+	private static final byte[] SAVE_CURSOR = "\u001b7".getBytes(StandardCharsets.US_ASCII);
+	private static final byte[] RESTORE_CURSOR = "\u001b8".getBytes(StandardCharsets.US_ASCII);
+	private static final byte[] NEWLINE = System.lineSeparator().getBytes(StandardCharsets.US_ASCII);
+	// cell text per piece code: 0 empty, otherwise 1 + color ordinal * 6 + type ordinal
+	private static final byte[][] CELLS = new byte[13][];
+
+	static {
+		CELLS[0] = "   ".getBytes(StandardCharsets.US_ASCII);
+		for (ChessPieceColor color : ChessPieceColor.values()) {
+			for (ChessPieceType type : ChessPieceType.values()) {
+				CELLS[pieceCode(new ChessPiece(type, color))] =
+						ChessUtil.shortFormatChessPiece(new ChessPiece(type, color)).getBytes(StandardCharsets.US_ASCII);
+			}
+		}
+	}
+
+	private final PrintStream out;
+	private final int[] codes = new int[64];
+	private final int[] shown = new int[64];
+	private byte[] frame = new byte[1024];
+	private int length = 0;
+	private boolean ansi = false;
+	private boolean onScreen = false;
+	private long bytesWritten = 0;
+
+	public BoardRenderer() {
+		// writes to whatever System.out is at the time
+		this(null);
+	}
+
+	public BoardRenderer(PrintStream out) {
+		this.out = out;
+	}
+
+	public synchronized boolean isAnsi() {
+		return ansi;
+	}
+
+	public synchronized void setAnsi(boolean ansi) {
+		// switching modes draws the next frame in full
+		this.ansi = ansi;
+		this.onScreen = false;
+	}
+
+	public synchronized long getBytesWritten() {
+		// bytes written to the stream so far (for comparing the modes)
+		return bytesWritten;
+	}
+
+	public synchronized void redraw() {
+		// draw the next frame in full (e.g. after the screen was cleared)
+		onScreen = false;
+	}
+
+	public synchronized void render(ChessPosition position) {
+		for (int square = 0; square < 64; square++) {
+			codes[square] = pieceCode(position.pieceAt(square));
+		}
+		draw();
+	}
+
+	public synchronized void render(Map<Point, ChessPiece> board) {
+		for (int square = 0; square < 64; square++) {
+			codes[square] = 0;
+		}
+		for (Map.Entry<Point, ChessPiece> mapEntry : board.entrySet()) {
+			int square = ChessPosition.squareOf(mapEntry.getKey());
+			if (square != ChessPosition.NO_SQUARE) {
+				codes[square] = pieceCode(mapEntry.getValue());
+			}
+		}
+		draw();
+	}
+
+	public synchronized void close() {
+		// give the whole screen back to scrolling (ANSI mode)
+		if (ansi && onScreen) {
+			length = 0;
+			append(FULL_SCROLL_REGION);
+			appendCursorBelowFrame();
+			flush();
+			onScreen = false;
+		}
+	}
+
+	private static int pieceCode(ChessPiece piece) {
+		return (piece == null) ? 0 : 1 + piece.getColor().ordinal() * 6 + piece.getType().ordinal();
+	}
+
+	private void draw() {
+		length = 0;
+		if (!ansi) {
+			appendFrame();
+		}
+		else if (!onScreen) {
+			append(CLEAR_SCREEN);
+			append(CURSOR_HOME);
+			appendFrame();
+			// scroll only the lines below the frame
+			append(ESC);
+			appendNumber(FRAME_LINES + 1);
+			append('r');
+			appendCursorBelowFrame();
+			System.arraycopy(codes, 0, shown, 0, 64);
+			onScreen = true;
+		}
+		else {
+			// save the cursor, redraw the changed cells, and put the cursor back
+			boolean changed = false;
+			for (int square = 0; square < 64; square++) {
+				if (codes[square] != shown[square]) {
+					if (!changed) {
+						append(SAVE_CURSOR);
+						changed = true;
+					}
+					append(ESC);
+					appendNumber(FIRST_RANK_LINE + 7 - ChessPosition.rankOf(square));
+					append(';');
+					appendNumber(FIRST_FILE_COLUMN + 4 * ChessPosition.fileOf(square));
+					append('H');
+					append(CELLS[codes[square]]);
+					shown[square] = codes[square];
+				}
+			}
+			if (changed) {
+				append(RESTORE_CURSOR);
+			}
+		}
+		if (length > 0) {
+			flush();
+		}
+	}
+
+	private void appendCursorBelowFrame() {
+		// move the cursor to the first line under the frame
+		append(ESC);
+		appendNumber(FRAME_LINES + 1);
+		append(";1H");
+	}
+
+	private void appendFrame() {
+		// the same text the board was always shown with
+		appendLine("CURRENT CHESS BOARD");
+		appendLine("+++++++++++++++++++");
+		appendLine("");
+		appendLine("");
+		append("  ");
+		appendFileNumbers();
+		appendLine("##################################");
+		for (int y = ChessUtil.endBound; y >= ChessUtil.begBound; y--) {
+			appendNumber(y);
+			append('#');
+			for (int x = ChessUtil.begBound; x <= ChessUtil.endBound; x++) {
+				append(CELLS[codes[ChessPosition.square(x, y)]]);
+				append('|');
+			}
+			appendNumber(y);
+			append(NEWLINE);
+		}
+		appendLine("##################################");
+		append(" #");
+		appendFileNumbers();
+		appendLine("");
+	}
+
+	private void appendFileNumbers() {
+		for (int x = ChessUtil.begBound; x <= ChessUtil.endBound; x++) {
+			append(' ');
+			appendNumber(x);
+			append(" |");
+		}
+		append(NEWLINE);
+	}
+
+	private void appendLine(String text) {
+		append(text);
+		append(NEWLINE);
+	}
+
+	private void append(String text) {
+		ensureCapacity(text.length());
+		for (int i = 0; i < text.length(); i++) {
+			frame[length++] = (byte) text.charAt(i);
+		}
+	}
+
+	private void append(byte[] bytes) {
+		ensureCapacity(bytes.length);
+		System.arraycopy(bytes, 0, frame, length, bytes.length);
+		length += bytes.length;
+	}
+
+	private void append(char c) {
+		ensureCapacity(1);
+		frame[length++] = (byte) c;
+	}
+
+	private void appendNumber(int n) {
+		// small non-negative numbers (coordinates and screen positions)
+		if (n >= 10) {
+			appendNumber(n / 10);
+		}
+		append((char) ('0' + n % 10));
+	}
+
+	private void ensureCapacity(int extra) {
+		if (length + extra > frame.length) {
+			byte[] larger = new byte[Math.max(frame.length * 2, length + extra)];
+			System.arraycopy(frame, 0, larger, 0, length);
+			frame = larger;
+		}
+	}
+
+	private void flush() {
+		PrintStream stream = (out == null) ? System.out : out;
+		stream.write(frame, 0, length);
+		stream.flush();
+		bytesWritten += length;
+	}
+
+}
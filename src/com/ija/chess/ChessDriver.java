@@ -5,28 +5,57 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.ArrayList;
 import java.awt.Point;
-import java.util.Scanner;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileReader;
+import java.io.InputStreamReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Paths;
 
 public class ChessDriver {
 	
 	
-	private Map<Point, ChessPiece> board = new HashMap<Point, ChessPiece>();
+	private ChessPosition position = new ChessPosition();
 	private Map<ChessPiece, Point> capturedPiecesMap = new HashMap<ChessPiece, Point>();
-	private ChessPieceColor currentColor;
+	private ChessPieceColor engineColor = null;
+	private ChessEngine engine = null;
 	
 	private static final String QUIT = "Quit";
 	private static final String EXECMOVE = "EXECMOVE";
 	private static final String SHOWCAPTURED = "SHOWCAPTURED";
 	private static final String CASTLELEFTROOK = "CASTLELEFTROOK";
 	private static final String CASTLERIGHTROOK = "CASTLERIGHTROOK";
+	private static final String ENGINEPLAY = "ENGINEPLAY";
+	private static final String SHOWFEN = "SHOWFEN";
+	private static final String SUGGEST = "SUGGEST";
+	private static final String SHOWSTATS = "SHOWSTATS";
+	
+	private static final long ENGINE_MOVE_TIME_MILLIS = 1000;
+	private static int engineThreads = 1;
+	private static String startFen = ChessFen.INITIAL_POSITION;
+	private static GameArchiveWriter archive = null;
+	private static OpeningBook openingBook = null;
+	private static Tablebases tablebases = null;
 	
 	
 	public Map<Point, ChessPiece> getBoard() {
-		return this.board;
+		// Map adapter of the position (for display)
+		return this.position.toBoardMap();
 	}
 	
 	public void setBoard(Map<Point, ChessPiece> board) {
-		this.board = board;
+		ChessPieceColor currentColor = getCurrentColor();
+		this.position = ChessPosition.fromBoardMap(board);
+		this.position.setSideToMove(currentColor);
+	}
+	
+	public ChessPosition getPosition() {
+		return this.position;
+	}
+	
+	public void setPosition(ChessPosition position) {
+		this.position = position;
 	}
 	
 	public Map<ChessPiece, Point> getCapturedPiecesMap() {
@@ -38,32 +67,104 @@ public class ChessDriver {
 	}
 	
 	
+	public ChessPieceColor getEngineColor() {
+		return this.engineColor;
+	}
+	
+	public void setEngineColor(ChessPieceColor engineColor) {
+		this.engineColor = engineColor;
+	}
+	
+	public ChessEngine getEngine() {
+		// the computer player searching this game's position (created on first use)
+		if (this.engine == null) {
+			this.engine = new ChessEngine(this.position);
+			this.engine.setThreads(engineThreads);
+			this.engine.setOpeningBook(openingBook);
+			this.engine.setTablebases(tablebases);
+		}
+		return this.engine;
+	}
+	
+	public String toFen() {
+		// the game state (board, current color, castling rights, en passant, move counters) as FEN
+		return ChessFen.format(this.position);
+	}
+	
+	public void loadFen(String fen) {
+		// replace the game state by the position described by a FEN string
+		this.position = ChessFen.parse(fen);
+		this.engine = null;
+	}
+	
 	public ChessPieceColor getCurrentColor()  {
-		return this.currentColor;
+		return this.position.getSideToMove();
 	}
 	
 	public void setCurrentColor(ChessPieceColor currentColor) {
-		this.currentColor = currentColor;
+		this.position.setSideToMove(currentColor);
 	}
 	
 	
 	private static ChessDriver gameInit() {
 	    // sets up a new game (ChessDriver) object and initializes the
-		// values of currentColor, the board map, captured pieces map  
+		// values of currentColor, the board position, captured pieces map  
+		// (from the --fen position, the initial position unless one was given)
 		
 		ChessDriver game = new ChessDriver();
-		game.setCurrentColor(ChessPieceColor.WHITE);
-		game.getBoard().clear();
-		game.getBoard().putAll(ChessUtil.initBoard());
+		game.loadFen(startFen);
+		if (archive != null) {
+			archive.beginGame(startFen);
+		}
 		game.getCapturedPiecesMap().clear();
 		game.getCapturedPiecesMap().putAll(new HashMap<ChessPiece, Point>());
 		game.setCapturedPiecesMap(new HashMap<ChessPiece, Point>());
 		return game;
 	}
 	
-	private static String menuChoices(Scanner scanner, ChessMove mover) {
+	private static void archiveMove(ChessMove mover) {
+		// record the move just executed in the --archive file (if any)
+		if (archive != null) {
+			archive.recordMove(mover.getLastMove());
+		}
+	}
+	
+	private static void archiveGame(int result) {
+		// write the finished (or abandoned) game to the --archive file (if any)
+		if (archive != null) {
+			try {
+				archive.endGame(result);
+				archive.flush();
+			} catch (IOException ex) {
+				System.out.println("Could not archive the game: " + ex.getMessage());
+			}
+		}
+	}
+	
+	private static void printArchive(File file, PrintStream out) throws IOException {
+		// one line per archived game: its moves as x,y-x,y, then "#", the result and the start FEN
+		GameArchiveReader reader = new GameArchiveReader(file);
+		try {
+			StringBuilder line = new StringBuilder(1024);
+			while (reader.nextGame()) {
+				line.setLength(0);
+				int move;
+				while ((move = reader.nextMove()) != ChessEngine.NO_MOVE) {
+					line.append(MoveCode.format(move)).append(' ');
+				}
+				line.append("# ").append(GameArchive.resultText(reader.getResult())).append(' ').append(reader.getStartFen());
+				out.println(line);
+			}
+		} finally {
+			reader.close();
+			out.flush();
+		}
+	}
+	
+	private static String menuChoices(ConsoleInput input, ChessMove mover) {
 	    // generates menu choices dynamically.  For instance if are captured pieces then
 		// viewing them is an option.  Similarly if King can be castled then that is an option.
+		// A move x,y-x,y typed instead of a number is executed directly, and the end of the input quits.
 		int choice = -1;
 		int cnt = 1;
 		String retVal = null;
@@ -85,11 +186,36 @@ public class ChessDriver {
 				System.out.println(cnt + " - castle " + mover.getCurrentColor() + " King with Right Rook");
 				menuChoiceMap.put(cnt++, CASTLERIGHTROOK);
 			}
+			System.out.println(cnt + " - Suggest a move");
+			menuChoiceMap.put(cnt++, SUGGEST);
+			System.out.println(cnt + " - Let the computer play " + mover.getCurrentColor());
+			menuChoiceMap.put(cnt++, ENGINEPLAY);
+			System.out.println(cnt + " - Show position as FEN");
+			menuChoiceMap.put(cnt++, SHOWFEN);
+			if (ChessMetrics.ENABLED) {
+				System.out.println(cnt + " - Show statistics");
+				menuChoiceMap.put(cnt++, SHOWSTATS);
+			}
 			System.out.println(cnt + " - Quit game");
 			menuChoiceMap.put(cnt, QUIT);
 		
-			if (scanner.hasNextInt()) { 
-				choice = scanner.nextInt();
+			String token = input.next();
+			if (token == null) {
+				validFlag = true;
+				retVal = QUIT;
+			}
+			else if (ChessUtil.parseInputMove(token) != null) {
+				// the FROM prompt takes the move
+				input.pushBack(token);
+				validFlag = true;
+				retVal = EXECMOVE;
+			}
+			else {
+				try {
+					choice = Integer.parseInt(token);
+				} catch (NumberFormatException ex) {
+					choice = -1;
+				}
 				if (choice >= 1 && choice <= cnt) {
 					validFlag = true;
 					retVal = menuChoiceMap.get(choice);
@@ -103,25 +229,212 @@ public class ChessDriver {
 		return retVal;
 	}
 	
+	private static String nextOrQuit(ConsoleInput input) {
+		// the next input item; the end of the input in the middle of a move ends the game as quitting does
+		String token = input.next();
+		if (token == null) {
+			System.out.println("");
+			System.out.println("End of input.  Goodbye.");
+			archiveGame(GameArchive.UNFINISHED);
+			input.close();
+			System.exit(0);
+		}
+		return token;
+	}
+	
 	public static void main(String[] args) {
 	    // sets up the game an iteratively queries the user through the menu and 
 		// executes logic in accordance with the menu item chosen.
-		Scanner scanner = new Scanner(System.in);
+		// Option: --threads N lets the computer player search with N threads (default 1)
+		// Option: --uci speaks the UCI protocol on stdin/stdout (for chess GUIs) through UciProtocol
+		// Option: --server hosts many games at once through the GameManager line protocol
+		// Option: --batch [file] replays the games of a move script (stdin without a file) through BatchRunner
+		// Option: --fen "<fen>" starts the game(s) from that position instead of the initial one
+		// Option: --archive file appends every game played to a binary GameArchive file
+		// Option: --unarchive file prints the games of a GameArchive file as move scripts (see --batch)
+		// Option: --book file lets the computer player (and "Suggest a move") use an OpeningBook
+		// Option: --build-book pgnfile bookfile [plies] builds an OpeningBook from the PGN games
+		// Option: --tablebases dir lets the computer player (and the game) use the endgame Tablebases in dir
+		// Option: --generate-tablebases dir MATERIAL... generates endgame tables (e.g. KQK KRK KPK) into dir
+		// Option: --ansi keeps the board at the top of the terminal and only redraws the squares a move changed
+		// Option: --metrics counts and times the rule checks and search nodes (ChessMetrics; JMX and a menu item)
+		// Option: --pgn file checks every game of a PGN file against the rules through PgnValidator
+		for (String arg : args) {
+			if (arg.equals("--metrics")) {
+				// must be set before ChessMetrics is first used, as it is read only once
+				System.setProperty("chess.metrics", "true");
+			}
+		}
+		boolean server = false;
+		boolean uci = false;
+		boolean batch = false;
+		String batchFile = null;
+		String pgnFile = null;
+		String unarchiveFile = null;
+		String[] buildBook = null;
+		List<String> generateTablebases = null;
+		for (int i = 0; i < args.length; i++) {
+			if (args[i].equals("--server")) {
+				server = true;
+			} else if (args[i].equals("--uci")) {
+				uci = true;
+			} else if (args[i].equals("--batch")) {
+				batch = true;
+				if (i + 1 < args.length && !args[i + 1].startsWith("--")) {
+					batchFile = args[++i];
+				}
+			} else if (args[i].equals("--fen") && i + 1 < args.length) {
+				try {
+					ChessFen.parse(args[i + 1]);
+					startFen = args[++i];
+				} catch (IllegalArgumentException ex) {
+					System.out.println("Invalid position: " + ex.getMessage());
+					System.exit(2);
+				}
+			} else if (args[i].equals("--archive") && i + 1 < args.length) {
+				try {
+					archive = new GameArchiveWriter(new File(args[++i]));
+				} catch (IOException ex) {
+					System.out.println("Cannot archive games: " + ex.getMessage());
+					System.exit(2);
+				}
+			} else if (args[i].equals("--unarchive") && i + 1 < args.length) {
+				unarchiveFile = args[++i];
+			} else if (args[i].equals("--book") && i + 1 < args.length) {
+				try {
+					openingBook = new OpeningBook(Paths.get(args[++i]));
+				} catch (IOException ex) {
+					System.out.println("Cannot use the opening book: " + ex.getMessage());
+					System.exit(2);
+				}
+			} else if (args[i].equals("--build-book") && i + 2 < args.length) {
+				buildBook = new String[] {args[++i], args[++i], Integer.toString(OpeningBookBuilder.DEFAULT_MAX_PLIES)};
+				if (i + 1 < args.length && !args[i + 1].startsWith("--")) {
+					buildBook[2] = args[++i];
+				}
+			} else if (args[i].equals("--ansi")) {
+				ChessUtil.getBoardRenderer().setAnsi(true);
+				// give the terminal its normal scrolling back however the program ends
+				Runtime.getRuntime().addShutdownHook(new Thread() {
+					public void run() {
+						ChessUtil.getBoardRenderer().close();
+					}
+				});
+			} else if (args[i].equals("--tablebases") && i + 1 < args.length) {
+				tablebases = new Tablebases(new File(args[++i]));
+			} else if (args[i].equals("--generate-tablebases") && i + 1 < args.length) {
+				tablebases = new Tablebases(new File(args[++i]));
+				generateTablebases = new ArrayList<String>();
+				while (i + 1 < args.length && !args[i + 1].startsWith("--")) {
+					generateTablebases.add(args[++i]);
+				}
+			} else if (args[i].equals("--pgn") && i + 1 < args.length) {
+				pgnFile = args[++i];
+			} else if (args[i].equals("--threads") && i + 1 < args.length) {
+				try {
+					engineThreads = Math.max(1, Integer.parseInt(args[++i]));
+				} catch (NumberFormatException ex) {
+					System.out.println("Invalid thread count " + args[i] + ".  Using 1 search thread.");
+				}
+			}
+		}
+		if (server) {
+			try {
+				new GameManager(new PrintStream(new BufferedOutputStream(System.out), false)).runProtocol(System.in);
+			} catch (IOException ex) {
+				System.err.println("Game server stopped: " + ex.getMessage());
+			}
+			return;
+		}
+		if (uci) {
+			UciProtocol protocol = new UciProtocol(new PrintStream(new BufferedOutputStream(System.out), false), engineThreads);
+			protocol.setOpeningBook(openingBook);
+			protocol.setTablebases(tablebases);
+			try {
+				protocol.run(System.in);
+			} catch (IOException ex) {
+				System.err.println("UCI session stopped: " + ex.getMessage());
+			}
+			System.exit(0);
+		}
+		if (unarchiveFile != null) {
+			try {
+				printArchive(new File(unarchiveFile), new PrintStream(new BufferedOutputStream(System.out, 1 << 16), false));
+			} catch (IOException ex) {
+				System.err.println("Reading the archive stopped: " + ex.getMessage());
+				System.exit(2);
+			}
+			System.exit(0);
+		}
+		if (buildBook != null) {
+			PrintStream out = new PrintStream(new BufferedOutputStream(System.out, 1 << 16), false);
+			try {
+				OpeningBookBuilder builder = new OpeningBookBuilder(out, Integer.parseInt(buildBook[2]), 1);
+				out.println("book records " + builder.build(Paths.get(buildBook[0]), Paths.get(buildBook[1])));
+			} catch (IOException ex) {
+				System.err.println("Building the opening book stopped: " + ex.getMessage());
+				System.exit(2);
+			} catch (NumberFormatException ex) {
+				System.err.println("Invalid number of book plies " + buildBook[2]);
+				System.exit(2);
+			}
+			out.flush();
+			System.exit(0);
+		}
+		if (generateTablebases != null) {
+			TablebaseGenerator generator = new TablebaseGenerator(tablebases, Math.max(engineThreads, Runtime.getRuntime().availableProcessors()), System.out);
+			try {
+				for (String material : generateTablebases) {
+					generator.generate(material);
+				}
+			} catch (IllegalArgumentException ex) {
+				System.err.println(ex.getMessage());
+				System.exit(2);
+			} catch (IOException ex) {
+				System.err.println("Generating the tablebases stopped: " + ex.getMessage());
+				System.exit(2);
+			}
+			System.exit(0);
+		}
+		if (pgnFile != null) {
+			PgnValidator validator = new PgnValidator(new PrintStream(new BufferedOutputStream(System.out, 1 << 16), false));
+			try {
+				validator.validate(Paths.get(pgnFile));
+			} catch (IOException ex) {
+				System.err.println("PGN import stopped: " + ex.getMessage());
+				System.exit(2);
+			}
+			System.exit(validator.getIllegalGames() > 0 ? 1 : 0);
+		}
+		if (batch) {
+			BatchRunner runner = new BatchRunner(new PrintStream(new BufferedOutputStream(System.out, 1 << 16), false));
+			try {
+				runner.run(batchFile == null ? new InputStreamReader(System.in) : new FileReader(batchFile));
+			} catch (IOException ex) {
+				System.err.println("Batch replay stopped: " + ex.getMessage());
+				System.exit(2);
+			}
+			System.exit(runner.getIllegalMoves() > 0 ? 1 : 0);
+		}
+		ConsoleInput input = new ConsoleInput(System.in);
 		ChessDriver game = null;
 		ChessMove mover = null;		
 		while (true) {
 			System.out.print("Do you wish to start a Chess Game? (Y/N)");
-		    String gameStartResponse = scanner.next();
+		    String gameStartResponse = input.next();
+		    if (gameStartResponse == null) {
+		    	gameStartResponse = "n";
+		    }
 		    if (gameStartResponse != null && ( gameStartResponse.equalsIgnoreCase("y") || gameStartResponse.equalsIgnoreCase("n")) ) {
 		    	if (gameStartResponse.equalsIgnoreCase("y")) {
 		    		game = gameInit();
-		    		mover = new ChessMove(game.getBoard(), game.getCapturedPiecesMap(), game.getCurrentColor());
+		    		mover = new ChessMove(game.getPosition(), game.getCapturedPiecesMap(), game.getCurrentColor());
 		    		System.out.println("");
 		    		break;
 		    	}
 		    	else {
 		    		System.out.println("Did not start game.  Goodbye");
-		    		scanner.close();
+		    		input.close();
 		    		System.exit(0);
 		    	}
 		    }
@@ -131,32 +444,42 @@ public class ChessDriver {
 		    }
 		}
 		while (true) {
-			Point kingLocation = null;
-			for (Map.Entry<Point,ChessPiece> mapEntry : game.getBoard().entrySet()) {
-				if (mapEntry.getValue()!= null && mapEntry.getValue().getType().equals(ChessPieceType.KING)  && mapEntry.getValue().getColor().equals(game.getCurrentColor())) {
-					kingLocation = mapEntry.getKey();
-					break;
+			Point kingLocation = ChessPosition.toPoint(game.getPosition().kingSquare(game.getCurrentColor()));
+			// the game ends when the side to move has no legal move (checked every turn, also for the computer)
+			GameStatus status = mover.gameStatus();
+			if (status.isOver()) {
+				ChessUtil.showBoard(game.getPosition());
+				if (status == GameStatus.CHECKMATE) {
+					System.out.println(game.getCurrentColor() + " is checkmated. " + 
+				                          ((game.getCurrentColor().equals(ChessPieceColor.WHITE)) ? ChessPieceColor.BLACK : ChessPieceColor.WHITE) +
+				                           " wins");
+					archiveGame(game.getCurrentColor().equals(ChessPieceColor.WHITE) ? GameArchive.BLACK_WINS : GameArchive.WHITE_WINS);
+				}
+				else if (status == GameStatus.STALEMATE) {
+					System.out.println(game.getCurrentColor() + " has no legal move.  Stalemate - the game is a draw.");
+					archiveGame(GameArchive.DRAW);
+				}
+				else {
+					System.out.println("The game is a " + status + ".");
+					archiveGame(GameArchive.DRAW);
 				}
-			}
-			if (mover.kingCheckMated(kingLocation)) {
-				ChessUtil.showBoard(game.getBoard());
-				System.out.println(game.getCurrentColor() + " is checkmated. " + 
-			                          ((game.getCurrentColor().equals(ChessPieceColor.WHITE)) ? ChessPieceColor.BLACK : ChessPieceColor.WHITE) +
-			                           " wins");
 				System.out.println("Game over.");
 				while (true) {
 					System.out.print("Start new game? (Y/N");
-					String newgameStartResponse = scanner.next();
+					String newgameStartResponse = input.next();
+					if (newgameStartResponse == null) {
+						newgameStartResponse = "n";
+					}
 				    if (newgameStartResponse != null && ( newgameStartResponse.equalsIgnoreCase("y") || newgameStartResponse.equalsIgnoreCase("n")) ) {
 				    	if (newgameStartResponse.equalsIgnoreCase("y")) {
 				    		game = gameInit();
-				    		mover = new ChessMove(game.getBoard(), game.getCapturedPiecesMap(), game.getCurrentColor());
+				    		mover = new ChessMove(game.getPosition(), game.getCapturedPiecesMap(), game.getCurrentColor());
 				    		System.out.println("");
 				    		break;
 				    	}
 				    	else {
 				    		System.out.println("Did not start new game.  Goodbye");
-				    		scanner.close();
+				    		input.close();
 				    		System.exit(0);
 				    	}
 				    }
@@ -166,11 +489,38 @@ public class ChessDriver {
 				    }
 				}
 			}
+			if (game.getCurrentColor().equals(game.getEngineColor())) {
+				// the computer plays this color: search for a move within the time budget and play it
+				int move = game.getEngine().findBestMove(ENGINE_MOVE_TIME_MILLIS);
+				if (move == ChessEngine.NO_MOVE) {
+					ChessUtil.showBoard(game.getPosition());
+					System.out.println(game.getCurrentColor() + " has no legal move.  Stalemate - the game is a draw.");
+					archiveGame(GameArchive.DRAW);
+					input.close();
+					System.exit(0);
+				}
+				System.out.println("Computer (" + game.getCurrentColor() + ") moves " + MoveCode.format(move));
+				if (!mover.executeMove(MoveCode.fromPoint(move), MoveCode.toPoint(move))) {
+					// the rules refused the engine's move: report why and hand this color back to the player
+					System.out.println("Invalid move for rollowing reason(s):");
+					for (String errorStr : mover.getErrorList()) {
+						System.out.println(errorStr);
+					}
+					game.setEngineColor(null);
+					System.out.println("The computer no longer plays " + game.getCurrentColor());
+					System.out.println("");
+					continue;
+				}
+				archiveMove(mover);
+				System.out.println("");
+				continue;
+			}
 			boolean kingUnderCheckFlag = mover.kingInCheck(kingLocation);
-			String menuChoice = menuChoices(scanner, mover);
+			String menuChoice = menuChoices(input, mover);
 			if (menuChoice.equals(QUIT)) {
 				System.out.println("You quit the game.  See you next time.  Goodbye.");
-				scanner.close();
+				archiveGame(GameArchive.UNFINISHED);
+				input.close();
 				System.exit(0);
 			}
 			else if (menuChoice.equals(EXECMOVE)) {
@@ -178,21 +528,35 @@ public class ChessDriver {
 			    if (kingUnderCheckFlag) {
 					System.out.println("WARNING: " + game.getCurrentColor() +" King is currently uncer check");
 				}
-			    ChessUtil.showBoard(game.getBoard());
+			    if (tablebases != null) {
+			    	int result = tablebases.probe(game.getPosition());
+			    	if (result != Tablebases.NOT_FOUND) {
+			    		System.out.println("Endgame tablebase: " + Tablebases.describe(result, game.getCurrentColor()));
+			    	}
+			    }
+			    ChessUtil.showBoard(game.getPosition());
 				Point current = null;
 				Point target = null;
 				while (true) {					
 					System.out.print(game.getCurrentColor() + ": Move piece FROM x,y (where x and y are integers between 0 and 7");
-					current = ChessUtil.parseInputCoord(scanner.next());
+					String token = nextOrQuit(input);
+					// a whole move x,y-x,y answers the TO prompt as well
+					Point[] points = ChessUtil.parseInputMove(token);
+					if (points != null) {
+						current = points[0];
+						target = points[1];
+						break;
+					}
+					current = ChessUtil.parseInputCoord(token);
 					if (current != null ) {
 						break;
 						}
 					System.out.println("Invalid coordinate.  Try again.");
 					System.out.println("");
 				}
-				while (true) {
+				while (target == null) {
 					System.out.print(game.getCurrentColor() + ": Move piece TO x,y (where x and y are integers between 0 and 7");
-					target = ChessUtil.parseInputCoord(scanner.next());
+					target = ChessUtil.parseInputCoord(nextOrQuit(input));
 					if (target != null ) {
 						break;
 						}
@@ -202,8 +566,8 @@ public class ChessDriver {
 				
 				mover.executeMove(current, target);
 				if (mover.getErrorList().isEmpty()) {
-					game.setCurrentColor((game.getCurrentColor().equals(ChessPieceColor.WHITE)) ? ChessPieceColor.BLACK : ChessPieceColor.WHITE);
-					mover.setCurrentColor(game.getCurrentColor());
+					// executing the move has passed the turn to the other color
+					archiveMove(mover);
 					
 					System.out.println("Move executed sucdessfully");
 					System.out.println("");
@@ -213,7 +577,46 @@ public class ChessDriver {
 						for (String errorStr : mover.getErrorList()) {
 							System.out.println(errorStr);
 						}					
+						// the moves typed after an illegal one were meant for another position
+						int skipped = input.discardQueued();
+						if (skipped > 0) {
+							System.out.println("Skipped the rest of the input line (" + skipped + " item(s))");
+						}
+				}
+			}
+			else if (menuChoice.equals(ENGINEPLAY)) {
+				game.setEngineColor(game.getCurrentColor());
+				System.out.println("The computer now plays " + game.getCurrentColor());
+				System.out.println("");
+			}
+			else if (menuChoice.equals(SUGGEST)) {
+				// a book move if the opening book has one, a tablebase move in a covered ending, otherwise the result of a search
+				ChessEngine engine = game.getEngine();
+				int move = engine.bookMove();
+				String source = "opening book";
+				if (move == ChessEngine.NO_MOVE) {
+					move = engine.tablebaseMove();
+					source = "endgame tablebase";
+				}
+				if (move == ChessEngine.NO_MOVE) {
+					move = engine.findBestMove(ENGINE_MOVE_TIME_MILLIS);
+					source = "search to depth " + engine.getCompletedDepth();
+				}
+				if (move == ChessEngine.NO_MOVE) {
+					System.out.println("There is no legal move to suggest.");
+				}
+				else {
+					System.out.println("Suggested move: " + MoveCode.format(move) + " (" + source + ")");
 				}
+				System.out.println("");
+			}
+			else if (menuChoice.equals(SHOWSTATS)) {
+				System.out.println(ChessMetrics.get().getReport());
+				System.out.println("");
+			}
+			else if (menuChoice.equals(SHOWFEN)) {
+				System.out.println(game.toFen());
+				System.out.println("");
 			}
 			else if (menuChoice.equals(SHOWCAPTURED)) {
 				ChessUtil.showCapturedPieces(mover.getCapturedPiecesMap());
@@ -224,8 +627,8 @@ public class ChessDriver {
 				Point target = new Point(2, yCoord);
 				mover.executeMove(current, target);
 				if (mover.getErrorList().isEmpty()) {
-					game.setCurrentColor((game.getCurrentColor().equals(ChessPieceColor.WHITE)) ? ChessPieceColor.BLACK : ChessPieceColor.WHITE);
-					mover.setCurrentColor(game.getCurrentColor());
+					// executing the move has passed the turn to the other color
+					archiveMove(mover);
 					System.out.println("Move executed sucdessfully");
 					System.out.println("");
 					}
@@ -242,8 +645,8 @@ public class ChessDriver {
 				Point target = new Point(6, yCoord);
 				mover.executeMove(current, target);
 				if (mover.getErrorList().isEmpty()) {
-					game.setCurrentColor((game.getCurrentColor().equals(ChessPieceColor.WHITE)) ? ChessPieceColor.BLACK : ChessPieceColor.WHITE);
-					mover.setCurrentColor(game.getCurrentColor());
+					// executing the move has passed the turn to the other color
+					archiveMove(mover);
 					System.out.println("Move executed sucdessfully");
 					System.out.println("");
 					}
@@ -0,0 +1,554 @@
+package com.ija.chess;
+
+import java.awt.Point;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.ArrayList;
+
+// computer player: iterative-deepening negamax search with alpha-beta pruning.
+// The search runs directly on a ChessPosition with makeMove/unmakeMove and the
+// legal move generator of ChessMove writing into one preallocated MoveBuffer per
+// ply, so searching a node does not allocate.  Each iteration searches one ply
+// deeper than the last until the time budget runs out; the best move of the last
+// completed iteration is played.
+// Search results are kept in a TranspositionTable.  With more than one thread the
+// search is "Lazy SMP": helper threads search copies of the position with their own
+// engines, sharing the table, and the main thread's result is played.  With one
+// thread (the default) the search is deterministic.
+// Moves are searched best-first: the table's move for the position, then captures by
+// MVV-LVA (most valuable victim, then least valuable attacker), then the two "killer"
+// moves that last caused a cutoff at the same ply, then the other quiet moves by their
+// history score (how often and how deep they caused cutoffs).  Moves are picked one at
+// a time from the scored list, so a cutoff saves sorting the rest.  At the horizon a
+// quiescence search follows captures (and every reply to check) until the position is
+// quiet, so a capture is not scored before its recapture: the side to move may "stand
+// pat" on the static evaluation, and captures that cannot lift the score near alpha
+// even by the value of the captured piece (delta pruning) are not searched.
+// With an OpeningBook the book is consulted first: a legal book move is played
+// without searching.  With Tablebases a position they cover is not searched either:
+// the move keeping the best result (fastest win, slowest loss) is played, and inside
+// the search such positions are scored from the tables instead of searched further.
+
+public class ChessEngine {
+
+	public static final int MAX_DEPTH = 64;
+	public static final int MATE_SCORE = 100000;
+	public static final int NO_MOVE = 0;
+
+	private static final int INFINITY = MATE_SCORE + 1;
+	// tablebase wins score below every mate the search finds itself (and outside the mate
+	// range, as they do not depend on the ply), shorter wins higher
+	private static final int TABLEBASE_WIN = MATE_SCORE - MAX_DEPTH - 1;
+	private static final int TIME_CHECK_INTERVAL = 2048;
+	// move ordering scores: the table move, captures and promotions (plus MVV-LVA), killers, then history
+	private static final int TABLE_MOVE_ORDER = 1 << 30;
+	private static final int CAPTURE_ORDER = 1 << 29;
+	private static final int FIRST_KILLER_ORDER = 1 << 28;
+	private static final int SECOND_KILLER_ORDER = FIRST_KILLER_ORDER - 1;
+	// history scores are halved when one reaches this, keeping them below the killers
+	private static final int HISTORY_LIMIT = 1 << 20;
+	// a capture is skipped in the quiescence search unless it can bring the score within this of alpha
+	private static final int DELTA_MARGIN = 200;
+
+	private ChessPosition position;
+	private ChessMove mover;
+	private TranspositionTable table;
+	private OpeningBook book = null;
+	private Tablebases tablebases = null;
+	private int threads = 1;
+	private long helperNodes = 0;
+	private MoveBuffer[] moveBuffers = new MoveBuffer[MAX_DEPTH + 1];
+	private int[][] orderScores = new int[MAX_DEPTH + 1][MoveBuffer.DEFAULT_CAPACITY];
+	private int[][] killers = new int[MAX_DEPTH + 1][2];
+	// indexed by color ordinal, then from square * 64 + to square
+	private int[][] history = new int[2][64 * 64];
+
+	private long nodes = 0;
+	private long deadline = Long.MAX_VALUE;
+	private volatile boolean stopRequested = false;
+	private boolean stopped = false;
+	private int bestMove = NO_MOVE;
+	private int bestScore = 0;
+	private int completedDepth = 0;
+
+	public ChessEngine(ChessPosition position) {
+		this(position, new TranspositionTable());
+	}
+
+	public ChessEngine(ChessPosition position, TranspositionTable table) {
+		this.position = position;
+		this.table = table;
+		this.mover = new ChessMove(position, new HashMap<ChessPiece, Point>(), position.getSideToMove());
+		for (int i = 0; i <= MAX_DEPTH; i++) {
+			moveBuffers[i] = new MoveBuffer();
+		}
+	}
+
+	public long getNodes() {
+		// nodes searched by the last search, helper threads included
+		return nodes + helperNodes;
+	}
+
+	public int getThreads() {
+		return threads;
+	}
+
+	public void setThreads(int threads) {
+		this.threads = Math.max(1, threads);
+	}
+
+	public TranspositionTable getTranspositionTable() {
+		return table;
+	}
+
+	public OpeningBook getOpeningBook() {
+		return book;
+	}
+	
+	public void setOpeningBook(OpeningBook book) {
+		this.book = book;
+	}
+	
+	public Tablebases getTablebases() {
+		return tablebases;
+	}
+	
+	public void setTablebases(Tablebases tablebases) {
+		this.tablebases = tablebases;
+	}
+	
+	public int tablebaseMove() {
+		// the move keeping the tablebase result of the position (the fastest win, a draw, or
+		// the slowest loss), or NO_MOVE if the tables do not cover it
+		if (tablebases == null || tablebases.probe(position) == Tablebases.NOT_FOUND) {
+			return NO_MOVE;
+		}
+		MoveBuffer moves = moveBuffers[0];
+		mover.generateLegalMoves(moves);
+		int bestMove = NO_MOVE;
+		int bestScore = -INFINITY;
+		for (int i = 0; i < moves.size(); i++) {
+			position.makeMove(moves.get(i));
+			int result = tablebases.probe(position);
+			position.unmakeMove();
+			if (result == Tablebases.NOT_FOUND) {
+				return NO_MOVE;
+			}
+			int score = -tablebaseScore(result);
+			if (score > bestScore) {
+				bestScore = score;
+				bestMove = moves.get(i);
+			}
+		}
+		return bestMove;
+	}
+	
+	private static int tablebaseScore(int result) {
+		// search score of a tablebase result for the side to move
+		switch (Tablebases.outcome(result)) {
+		case Tablebases.WIN: return TABLEBASE_WIN - Tablebases.distanceToMatePlies(result);
+		case Tablebases.LOSS: return -TABLEBASE_WIN + Tablebases.distanceToMatePlies(result);
+		default: return 0;
+		}
+	}
+	
+	public int bookMove() {
+		// the book move for the position if there is one and it is legal, otherwise NO_MOVE
+		if (book == null) {
+			return NO_MOVE;
+		}
+		int move = book.probe(position.positionKey());
+		if (move == NO_MOVE) {
+			return NO_MOVE;
+		}
+		mover.generateLegalMoves(moveBuffers[0]);
+		return moveBuffers[0].contains(move) ? move : NO_MOVE;
+	}
+	
+	public int getBestScore() {
+		return bestScore;
+	}
+
+	public int getCompletedDepth() {
+		return completedDepth;
+	}
+
+	public void stop() {
+		// ask a running search (on another thread) to finish as soon as possible.  A request made
+		// before the search has begun is kept, so that search ends at its first node.
+		stopRequested = true;
+	}
+
+	public int findBestMove(long timeBudgetMillis) {
+		return findBestMove(timeBudgetMillis, MAX_DEPTH);
+	}
+
+	public int findBestMove(long timeBudgetMillis, int maxDepth) {
+		// search the position for the side to move and return the best move found (NO_MOVE if
+		// there is no legal move).  The position is left as it was.  A stop request is used up
+		// by the search it ends: it is cleared when the search returns, not when it begins.
+		try {
+			return searchPosition(timeBudgetMillis, maxDepth);
+		} finally {
+			stopRequested = false;
+		}
+	}
+
+	private int searchPosition(long timeBudgetMillis, int maxDepth) {
+		// the book or tablebase move if there is one, else the result of the search
+		long deadline = (timeBudgetMillis <= 0) ? Long.MAX_VALUE : System.nanoTime() + timeBudgetMillis * 1000000L;
+		int bookMove = bookMove();
+		if (bookMove == NO_MOVE) {
+			bookMove = tablebaseMove();
+		}
+		if (bookMove != NO_MOVE) {
+			nodes = 0;
+			helperNodes = 0;
+			completedDepth = 0;
+			bestScore = 0;
+			bestMove = bookMove;
+			return bookMove;
+		}
+		helperNodes = 0;
+		List<ChessEngine> helpers = new ArrayList<ChessEngine>();
+		List<Thread> helperThreads = new ArrayList<Thread>();
+		for (int i = 1; i < threads; i++) {
+			// helpers start at alternating depths so that they do not all search the same tree
+			final ChessEngine helper = new ChessEngine(position.duplicate(), table);
+			helper.setTablebases(tablebases);
+			final int firstDepth = 1 + (i % 2);
+			final int helperMaxDepth = maxDepth;
+			Thread thread = new Thread(new Runnable() {
+				public void run() {
+					helper.search(Long.MAX_VALUE, helperMaxDepth, firstDepth);
+				}
+			}, "chess-search-helper-" + i);
+			thread.setDaemon(true);
+			helpers.add(helper);
+			helperThreads.add(thread);
+			thread.start();
+		}
+		int move = search(deadline, maxDepth, 1);
+		for (ChessEngine helper : helpers) {
+			helper.stop();
+		}
+		for (int i = 0; i < helperThreads.size(); i++) {
+			try {
+				helperThreads.get(i).join();
+			} catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+			}
+			helperNodes += helpers.get(i).nodes;
+		}
+		return move;
+	}
+
+	private int search(long deadline, int maxDepth, int firstDepth) {
+		// iterative deepening from firstDepth until maxDepth, the deadline or a stop request
+		nodes = 0;
+		completedDepth = 0;
+		bestMove = NO_MOVE;
+		bestScore = 0;
+		stopped = false;
+		this.deadline = deadline;
+		for (int ply = 0; ply <= MAX_DEPTH; ply++) {
+			killers[ply][0] = NO_MOVE;
+			killers[ply][1] = NO_MOVE;
+		}
+		for (int color = 0; color < 2; color++) {
+			Arrays.fill(history[color], 0);
+		}
+
+		MoveBuffer rootMoves = moveBuffers[0];
+		mover.generateLegalMoves(rootMoves);
+		if (rootMoves.isEmpty()) {
+			return NO_MOVE;
+		}
+		// the first iteration searches the root moves in capture order; later ones best move first
+		scoreMoves(rootMoves, 0, NO_MOVE);
+		for (int i = 0; i < rootMoves.size(); i++) {
+			nextMove(rootMoves, 0, i);
+		}
+		bestMove = rootMoves.get(0);
+		for (int depth = firstDepth; depth <= Math.min(maxDepth, MAX_DEPTH); depth++) {
+			int score = searchRoot(rootMoves, depth);
+			if (stopped) {
+				break;
+			}
+			bestScore = score;
+			completedDepth = depth;
+			if (Math.abs(score) >= MATE_SCORE - MAX_DEPTH) {
+				// a forced mate has been found; searching deeper cannot change the result
+				break;
+			}
+		}
+		return bestMove;
+	}
+
+	private int searchRoot(MoveBuffer rootMoves, int depth) {
+		// search every root move, keeping the best one at the front of the list so that the
+		// next (deeper) iteration searches it first
+		int alpha = -INFINITY;
+		int iterationBest = NO_MOVE;
+		for (int i = 0; i < rootMoves.size(); i++) {
+			int move = rootMoves.get(i);
+			position.makeMove(move);
+			int score = -negamax(depth - 1, 1, -INFINITY, -alpha);
+			position.unmakeMove();
+			if (stopped) {
+				break;
+			}
+			if (score > alpha) {
+				alpha = score;
+				iterationBest = move;
+				rootMoves.set(i, rootMoves.get(0));
+				rootMoves.set(0, move);
+			}
+		}
+		if (iterationBest != NO_MOVE) {
+			// an iteration cut short by the time budget searched the previous best move first,
+			// so any move that beat it is still an improvement
+			bestMove = iterationBest;
+		}
+		return alpha;
+	}
+
+	private boolean nodeStopped() {
+		// count a node and tell whether the search must stop
+		if (ChessMetrics.ENABLED) {
+			ChessMetrics.count(ChessMetrics.SEARCH_NODE);
+		}
+		// the clock is read every TIME_CHECK_INTERVAL nodes, a stop request is seen at the next node
+		if (((++nodes % TIME_CHECK_INTERVAL) == 0 && System.nanoTime() > deadline) || stopRequested) {
+			stopped = true;
+		}
+		return stopped;
+	}
+
+	private int negamax(int depth, int ply, int alpha, int beta) {
+		if (depth <= 0) {
+			return quiescence(ply, alpha, beta);
+		}
+		if (nodeStopped()) {
+			return 0;
+		}
+		if (ply >= MAX_DEPTH) {
+			return ChessEvaluation.evaluate(position);
+		}
+		if (ply > 0 && (position.isRepetition() || position.isFiftyMoveDraw() || position.hasInsufficientMaterial())) {
+			// a draw by rule (a repeated position is scored as a draw at its first repetition)
+			return 0;
+		}
+		if (tablebases != null && ply > 0) {
+			int result = tablebases.probe(position);
+			if (result != Tablebases.NOT_FOUND) {
+				return tablebaseScore(result);
+			}
+		}
+		long key = position.positionKey();
+		long entry = table.probe(key);
+		int tableMove = (entry == TranspositionTable.MISS) ? NO_MOVE : TranspositionTable.move(entry);
+		if (entry != TranspositionTable.MISS && TranspositionTable.depth(entry) >= depth) {
+			// a result from a search at least as deep is already known for this position
+			int score = scoreFromTable(TranspositionTable.score(entry), ply);
+			int bound = TranspositionTable.bound(entry);
+			if (bound == TranspositionTable.EXACT ||
+					(bound == TranspositionTable.LOWER_BOUND && score >= beta) ||
+					(bound == TranspositionTable.UPPER_BOUND && score <= alpha)) {
+				return score;
+			}
+		}
+		MoveBuffer moves = moveBuffers[ply];
+		mover.generateLegalMoves(moves);
+		if (moves.isEmpty()) {
+			// checkmate (scored so that nearer mates are preferred) or stalemate
+			return sideToMoveInCheck() ? -MATE_SCORE + ply : 0;
+		}
+		int originalAlpha = alpha;
+		int bestNodeScore = -INFINITY;
+		int bestNodeMove = NO_MOVE;
+		scoreMoves(moves, ply, tableMove);
+		for (int i = 0; i < moves.size(); i++) {
+			int move = nextMove(moves, ply, i);
+			position.makeMove(move);
+			int score = -negamax(depth - 1, ply + 1, -beta, -alpha);
+			position.unmakeMove();
+			if (stopped) {
+				return 0;
+			}
+			if (score > bestNodeScore) {
+				bestNodeScore = score;
+				bestNodeMove = move;
+			}
+			if (score > alpha) {
+				alpha = score;
+			}
+			if (score >= beta) {
+				if (!MoveCode.isCapture(move) && !MoveCode.isPromotion(move)) {
+					rememberCutoff(move, ply, depth);
+				}
+				break;
+			}
+		}
+		int bound = (bestNodeScore >= beta) ? TranspositionTable.LOWER_BOUND :
+			(bestNodeScore <= originalAlpha) ? TranspositionTable.UPPER_BOUND : TranspositionTable.EXACT;
+		table.store(key, bestNodeMove, scoreToTable(bestNodeScore, ply), depth, bound);
+		return bestNodeScore;
+	}
+
+	private int quiescence(int ply, int alpha, int beta) {
+		// search captures only (every legal move when in check) until the position is quiet
+		if (nodeStopped()) {
+			return 0;
+		}
+		int standPat = ChessEvaluation.evaluate(position);
+		if (ply >= MAX_DEPTH) {
+			return standPat;
+		}
+		boolean inCheck = sideToMoveInCheck();
+		if (!inCheck && standPat >= beta) {
+			// the side to move need not capture: the static evaluation is a lower bound
+			return standPat;
+		}
+		MoveBuffer moves = moveBuffers[ply];
+		mover.generateLegalMoves(moves);
+		if (inCheck && moves.isEmpty()) {
+			return -MATE_SCORE + ply;
+		}
+		int bestNodeScore = -INFINITY;
+		if (!inCheck) {
+			if (standPat > alpha) {
+				alpha = standPat;
+			}
+			bestNodeScore = standPat;
+			int captures = 0;
+			for (int i = 0; i < moves.size(); i++) {
+				int move = moves.get(i);
+				if ((MoveCode.isCapture(move) && standPat + capturedValue(move) + DELTA_MARGIN > alpha) ||
+						MoveCode.isPromotion(move)) {
+					moves.set(captures++, move);
+				}
+			}
+			moves.truncate(captures);
+		}
+		scoreMoves(moves, ply, NO_MOVE);
+		for (int i = 0; i < moves.size(); i++) {
+			int move = nextMove(moves, ply, i);
+			position.makeMove(move);
+			int score = -quiescence(ply + 1, -beta, -alpha);
+			position.unmakeMove();
+			if (stopped) {
+				return 0;
+			}
+			if (score > bestNodeScore) {
+				bestNodeScore = score;
+			}
+			if (score > alpha) {
+				alpha = score;
+			}
+			if (score >= beta) {
+				break;
+			}
+		}
+		return bestNodeScore;
+	}
+
+	private int capturedValue(int move) {
+		ChessPiece victim = position.pieceAt(MoveCode.to(move));
+		return (victim == null) ? 0 : ChessEvaluation.PIECE_VALUES[victim.getType().ordinal()];
+	}
+
+	private void scoreMoves(MoveBuffer moves, int ply, int tableMove) {
+		// the ordering score of every move at this ply (see the class comment)
+		int[] scores = orderScores[ply];
+		int[] sideHistory = history[position.getSideToMove().ordinal()];
+		for (int i = 0; i < moves.size(); i++) {
+			int move = moves.get(i);
+			if (move == tableMove) {
+				scores[i] = TABLE_MOVE_ORDER;
+			}
+			else if (MoveCode.isCapture(move) || MoveCode.isPromotion(move)) {
+				// victim value first; among equal victims the cheaper attacker first
+				int attacker = ChessEvaluation.PIECE_VALUES[position.pieceAt(MoveCode.from(move)).getType().ordinal()];
+				int gain = capturedValue(move) + (MoveCode.isPromotion(move) ? ChessEvaluation.PIECE_VALUES[ChessPieceType.QUEEN.ordinal()] : 0);
+				scores[i] = CAPTURE_ORDER + gain * 16 - attacker / 10;
+			}
+			else if (move == killers[ply][0]) {
+				scores[i] = FIRST_KILLER_ORDER;
+			}
+			else if (move == killers[ply][1]) {
+				scores[i] = SECOND_KILLER_ORDER;
+			}
+			else {
+				scores[i] = sideHistory[MoveCode.from(move) * 64 + MoveCode.to(move)];
+			}
+		}
+	}
+
+	private int nextMove(MoveBuffer moves, int ply, int index) {
+		// bring the best scored of the remaining moves to index and return it
+		int[] scores = orderScores[ply];
+		int best = index;
+		for (int i = index + 1; i < moves.size(); i++) {
+			if (scores[i] > scores[best]) {
+				best = i;
+			}
+		}
+		int move = moves.get(best);
+		if (best != index) {
+			int score = scores[best];
+			moves.set(best, moves.get(index));
+			scores[best] = scores[index];
+			moves.set(index, move);
+			scores[index] = score;
+		}
+		return move;
+	}
+
+	private void rememberCutoff(int move, int ply, int depth) {
+		// a quiet move refuted the opponent's last move: make it a killer and raise its history
+		if (killers[ply][0] != move) {
+			killers[ply][1] = killers[ply][0];
+			killers[ply][0] = move;
+		}
+		int[] sideHistory = history[position.getSideToMove().ordinal()];
+		int index = MoveCode.from(move) * 64 + MoveCode.to(move);
+		sideHistory[index] += depth * depth;
+		if (sideHistory[index] >= HISTORY_LIMIT) {
+			for (int i = 0; i < sideHistory.length; i++) {
+				sideHistory[i] /= 2;
+			}
+		}
+	}
+
+	private static int scoreToTable(int score, int ply) {
+		// mate scores are stored relative to the position (not the root) so they stay valid
+		// when the position is reached at a different ply
+		if (score >= MATE_SCORE - MAX_DEPTH) {
+			return score + ply;
+		}
+		if (score <= -MATE_SCORE + MAX_DEPTH) {
+			return score - ply;
+		}
+		return score;
+	}
+
+	private static int scoreFromTable(int score, int ply) {
+		if (score >= MATE_SCORE - MAX_DEPTH) {
+			return score - ply;
+		}
+		if (score <= -MATE_SCORE + MAX_DEPTH) {
+			return score + ply;
+		}
+		return score;
+	}
+
+	private boolean sideToMoveInCheck() {
+		ChessPieceColor side = position.getSideToMove();
+		int kingSquare = position.kingSquare(side);
+		return kingSquare != ChessPosition.NO_SQUARE &&
+				position.isSquareAttacked(kingSquare, (side.equals(ChessPieceColor.WHITE) ? ChessPieceColor.BLACK : ChessPieceColor.WHITE));
+	}
+
+}
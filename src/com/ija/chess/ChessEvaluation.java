@@ -0,0 +1,101 @@
+package com.ija.chess;
+
+// static evaluation of a position used by the search: material plus a small
+// piece-square bonus per piece, in centipawns from the point of view of the side
+// to move.  Tables are laid out from White's side (index y * 8 + x) and mirrored
+// for Black.
+
+public final class ChessEvaluation {
+	
+	// indexed by ChessPieceType ordinal: KING, QUEEN, ROOK, BISHOP, KNIGHT, PAWN
+	public static final int[] PIECE_VALUES = {0, 900, 500, 330, 320, 100};
+	
+	private static final int[] PAWN_TABLE = {
+		  0,   0,   0,   0,   0,   0,   0,   0,
+		  5,  10,  10, -20, -20,  10,  10,   5,
+		  5,  -5, -10,   0,   0, -10,  -5,   5,
+		  0,   0,   0,  20,  20,   0,   0,   0,
+		  5,   5,  10,  25,  25,  10,   5,   5,
+		 10,  10,  20,  30,  30,  20,  10,  10,
+		 50,  50,  50,  50,  50,  50,  50,  50,
+		  0,   0,   0,   0,   0,   0,   0,   0
+	};
+	
+	private static final int[] KNIGHT_TABLE = {
+		-50, -40, -30, -30, -30, -30, -40, -50,
+		-40, -20,   0,   5,   5,   0, -20, -40,
+		-30,   5,  10,  15,  15,  10,   5, -30,
+		-30,   0,  15,  20,  20,  15,   0, -30,
+		-30,   5,  15,  20,  20,  15,   5, -30,
+		-30,   0,  10,  15,  15,  10,   0, -30,
+		-40, -20,   0,   0,   0,   0, -20, -40,
+		-50, -40, -30, -30, -30, -30, -40, -50
+	};
+	
+	private static final int[] BISHOP_TABLE = {
+		-20, -10, -10, -10, -10, -10, -10, -20,
+		-10,   5,   0,   0,   0,   0,   5, -10,
+		-10,  10,  10,  10,  10,  10,  10, -10,
+		-10,   0,  10,  10,  10,  10,   0, -10,
+		-10,   5,   5,  10,  10,   5,   5, -10,
+		-10,   0,   5,  10,  10,   5,   0, -10,
+		-10,   0,   0,   0,   0,   0,   0, -10,
+		-20, -10, -10, -10, -10, -10, -10, -20
+	};
+	
+	private static final int[] ROOK_TABLE = {
+		  0,   0,   0,   5,   5,   0,   0,   0,
+		 -5,   0,   0,   0,   0,   0,   0,  -5,
+		 -5,   0,   0,   0,   0,   0,   0,  -5,
+		 -5,   0,   0,   0,   0,   0,   0,  -5,
+		 -5,   0,   0,   0,   0,   0,   0,  -5,
+		 -5,   0,   0,   0,   0,   0,   0,  -5,
+		  5,  10,  10,  10,  10,  10,  10,   5,
+		  0,   0,   0,   0,   0,   0,   0,   0
+	};
+	
+	private static final int[] QUEEN_TABLE = {
+		-20, -10, -10,  -5,  -5, -10, -10, -20,
+		-10,   0,   5,   0,   0,   0,   0, -10,
+		-10,   5,   5,   5,   5,   5,   0, -10,
+		  0,   0,   5,   5,   5,   5,   0,  -5,
+		 -5,   0,   5,   5,   5,   5,   0,  -5,
+		-10,   0,   5,   5,   5,   5,   0, -10,
+		-10,   0,   0,   0,   0,   0,   0, -10,
+		-20, -10, -10,  -5,  -5, -10, -10, -20
+	};
+	
+	private static final int[] KING_TABLE = {
+		 20,  30,  10,   0,   0,  10,  30,  20,
+		 20,  20,   0,   0,   0,   0,  20,  20,
+		-10, -20, -20, -20, -20, -20, -20, -10,
+		-20, -30, -30, -40, -40, -30, -30, -20,
+		-30, -40, -40, -50, -50, -40, -40, -30,
+		-30, -40, -40, -50, -50, -40, -40, -30,
+		-30, -40, -40, -50, -50, -40, -40, -30,
+		-30, -40, -40, -50, -50, -40, -40, -30
+	};
+	
+	// indexed by ChessPieceType ordinal
+	private static final int[][] PIECE_SQUARE_TABLES = {KING_TABLE, QUEEN_TABLE, ROOK_TABLE, BISHOP_TABLE, KNIGHT_TABLE, PAWN_TABLE};
+	
+	private ChessEvaluation() {
+	}
+	
+	public static int evaluate(ChessPosition position) {
+		// material and placement of the side to move minus that of the opponent
+		int score = 0;
+		for (ChessPieceColor color : ChessPieceColor.values()) {
+			int colorScore = 0;
+			boolean white = color.equals(ChessPieceColor.WHITE);
+			for (int i = 0; i < position.pieceCount(color); i++) {
+				int square = position.pieceSquare(color, i);
+				int type = position.pieceAt(square).getType().ordinal();
+				colorScore += PIECE_VALUES[type] + PIECE_SQUARE_TABLES[type][white ? square : (square ^ 56)];
+			}
+			score += (color.equals(position.getSideToMove()) ? colorScore : -colorScore);
+		}
+		return score;
+	}
+
+}
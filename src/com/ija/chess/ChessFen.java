@@ -0,0 +1,202 @@
+package com.ija.chess;
+
+// reads and writes positions in Forsyth-Edwards Notation, e.g. the initial position
+//   rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1
+// Ranks are listed from 8 (y = 7) down to 1 (y = 0) and files from a (x = 0) to h.
+// This app has no separate castling flags: a castling right is expressed through
+// numberOfMoves, so on reading the King and Rook of a right get 0 moves and a King or
+// Rook on its original square without the right gets 1.  Likewise a Pawn only gets 0
+// moves on its original rank (so it may still advance two squares).
+
+public final class ChessFen {
+
+	public static final String INITIAL_POSITION = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+
+	public static ChessPosition parse(String fen) {
+		// build the position described by a FEN string (the move counters may be left out);
+		// IllegalArgumentException if it is not valid FEN
+		String[] fields = (fen == null) ? new String[0] : fen.trim().split("\\s+");
+		if (fields.length < 4 || fields.length > 6) {
+			throw new IllegalArgumentException("FEN needs 4 to 6 fields: " + fen);
+		}
+		ChessPosition position = new ChessPosition();
+		String[] ranks = fields[0].split("/", -1);
+		if (ranks.length != 8) {
+			throw new IllegalArgumentException("FEN board needs 8 ranks: " + fields[0]);
+		}
+		int castlingRights = parseCastling(fields[2]);
+		for (int i = 0; i < 8; i++) {
+			int yCoord = 7 - i;
+			int xCoord = 0;
+			for (int j = 0; j < ranks[i].length(); j++) {
+				char letter = ranks[i].charAt(j);
+				if (letter >= '1' && letter <= '8') {
+					xCoord += letter - '0';
+					continue;
+				}
+				ChessPiece piece = pieceFor(letter);
+				if (piece == null || xCoord > 7) {
+					throw new IllegalArgumentException("FEN rank " + (yCoord + 1) + " is not valid: " + ranks[i]);
+				}
+				piece.setNumberOfMoves(initialMoves(piece, xCoord, yCoord, castlingRights));
+				position.putPiece(ChessPosition.square(xCoord, yCoord), piece);
+				xCoord++;
+			}
+			if (xCoord != 8) {
+				throw new IllegalArgumentException("FEN rank " + (yCoord + 1) + " does not have 8 squares: " + ranks[i]);
+			}
+		}
+		for (ChessPieceColor color : ChessPieceColor.values()) {
+			if (Long.bitCount(position.pieces(color, ChessPieceType.KING)) != 1) {
+				throw new IllegalArgumentException("FEN board needs exactly one " + color + " King: " + fields[0]);
+			}
+		}
+		if (fields[1].equals("w")) {
+			position.setSideToMove(ChessPieceColor.WHITE);
+		}
+		else if (fields[1].equals("b")) {
+			position.setSideToMove(ChessPieceColor.BLACK);
+		}
+		else {
+			throw new IllegalArgumentException("FEN side to move must be w or b: " + fields[1]);
+		}
+		if (!fields[3].equals("-")) {
+			int square = parseSquare(fields[3]);
+			if (square == ChessPosition.NO_SQUARE || (ChessPosition.rankOf(square) != 2 && ChessPosition.rankOf(square) != 5)) {
+				throw new IllegalArgumentException("FEN en passant square is not valid: " + fields[3]);
+			}
+			position.setEnPassantSquare(square);
+		}
+		position.setHalfmoveClock((fields.length > 4) ? parseCounter(fields[4], 0) : 0);
+		position.setFullmoveNumber((fields.length > 5) ? parseCounter(fields[5], 1) : 1);
+		return position;
+	}
+
+	public static String format(ChessPosition position) {
+		// FEN string of a position
+		StringBuilder fen = new StringBuilder(90);
+		for (int yCoord = 7; yCoord >= 0; yCoord--) {
+			int empty = 0;
+			for (int xCoord = 0; xCoord < 8; xCoord++) {
+				ChessPiece piece = position.pieceAt(ChessPosition.square(xCoord, yCoord));
+				if (piece == null) {
+					empty++;
+					continue;
+				}
+				if (empty > 0) {
+					fen.append(empty);
+					empty = 0;
+				}
+				fen.append(ChessUtil.pieceLetter(piece));
+			}
+			if (empty > 0) {
+				fen.append(empty);
+			}
+			if (yCoord > 0) {
+				fen.append('/');
+			}
+		}
+		fen.append(position.getSideToMove().equals(ChessPieceColor.WHITE) ? " w " : " b ");
+		int rights = position.getCastlingRights();
+		if (rights == 0) {
+			fen.append('-');
+		}
+		else {
+			if ((rights & ChessPosition.WHITE_CASTLE_RIGHT_ROOK) != 0) {
+				fen.append('K');
+			}
+			if ((rights & ChessPosition.WHITE_CASTLE_LEFT_ROOK) != 0) {
+				fen.append('Q');
+			}
+			if ((rights & ChessPosition.BLACK_CASTLE_RIGHT_ROOK) != 0) {
+				fen.append('k');
+			}
+			if ((rights & ChessPosition.BLACK_CASTLE_LEFT_ROOK) != 0) {
+				fen.append('q');
+			}
+		}
+		int enPassantSquare = position.getEnPassantSquare();
+		if (enPassantSquare == ChessPosition.NO_SQUARE) {
+			fen.append(" -");
+		}
+		else {
+			fen.append(' ').append((char) ('a' + ChessPosition.fileOf(enPassantSquare))).append((char) ('1' + ChessPosition.rankOf(enPassantSquare)));
+		}
+		fen.append(' ').append(position.getHalfmoveClock()).append(' ').append(position.getFullmoveNumber());
+		return fen.toString();
+	}
+
+	private static int parseCastling(String field) {
+		if (field.equals("-")) {
+			return 0;
+		}
+		int rights = 0;
+		for (int i = 0; i < field.length(); i++) {
+			switch (field.charAt(i)) {
+			case 'K': rights |= ChessPosition.WHITE_CASTLE_RIGHT_ROOK; break;
+			case 'Q': rights |= ChessPosition.WHITE_CASTLE_LEFT_ROOK; break;
+			case 'k': rights |= ChessPosition.BLACK_CASTLE_RIGHT_ROOK; break;
+			case 'q': rights |= ChessPosition.BLACK_CASTLE_LEFT_ROOK; break;
+			default: throw new IllegalArgumentException("FEN castling field is not valid: " + field);
+			}
+		}
+		return rights;
+	}
+
+	private static int initialMoves(ChessPiece piece, int xCoord, int yCoord, int castlingRights) {
+		// the numberOfMoves that gives a piece read from FEN the right castling/two-square moves
+		boolean white = piece.getColor().equals(ChessPieceColor.WHITE);
+		int homeRank = white ? 0 : 7;
+		int rightRookRight = white ? ChessPosition.WHITE_CASTLE_RIGHT_ROOK : ChessPosition.BLACK_CASTLE_RIGHT_ROOK;
+		int leftRookRight = white ? ChessPosition.WHITE_CASTLE_LEFT_ROOK : ChessPosition.BLACK_CASTLE_LEFT_ROOK;
+		if (piece.getType().equals(ChessPieceType.PAWN)) {
+			return (yCoord == (white ? 1 : 6)) ? 0 : 1;
+		}
+		if (piece.getType().equals(ChessPieceType.KING)) {
+			return (xCoord == 4 && yCoord == homeRank && (castlingRights & (rightRookRight | leftRookRight)) != 0) ? 0 : 1;
+		}
+		if (piece.getType().equals(ChessPieceType.ROOK) && yCoord == homeRank) {
+			if (xCoord == 7) {
+				return ((castlingRights & rightRookRight) != 0) ? 0 : 1;
+			}
+			if (xCoord == 0) {
+				return ((castlingRights & leftRookRight) != 0) ? 0 : 1;
+			}
+		}
+		return 0;
+	}
+
+	private static ChessPiece pieceFor(char letter) {
+		ChessPieceColor color = Character.isUpperCase(letter) ? ChessPieceColor.WHITE : ChessPieceColor.BLACK;
+		switch (Character.toUpperCase(letter)) {
+		case 'K': return new ChessPiece(ChessPieceType.KING, color);
+		case 'Q': return new ChessPiece(ChessPieceType.QUEEN, color);
+		case 'R': return new ChessPiece(ChessPieceType.ROOK, color);
+		case 'B': return new ChessPiece(ChessPieceType.BISHOP, color);
+		case 'N': return new ChessPiece(ChessPieceType.KNIGHT, color);
+		case 'P': return new ChessPiece(ChessPieceType.PAWN, color);
+		default: return null;
+		}
+	}
+
+	private static int parseSquare(String text) {
+		if (text.length() != 2) {
+			return ChessPosition.NO_SQUARE;
+		}
+		int xCoord = text.charAt(0) - 'a';
+		int yCoord = text.charAt(1) - '1';
+		return ChessPosition.onBoard(xCoord, yCoord) ? ChessPosition.square(xCoord, yCoord) : ChessPosition.NO_SQUARE;
+	}
+
+	private static int parseCounter(String field, int minimum) {
+		try {
+			int value = Integer.parseInt(field);
+			if (value >= minimum) {
+				return value;
+			}
+		} catch (NumberFormatException ex) {
+		}
+		throw new IllegalArgumentException("FEN move counter is not valid: " + field);
+	}
+
+}
@@ -0,0 +1,210 @@
+package com.ija.chess;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongBinaryOperator;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+// counters and latency histograms for the rule checks and the search, for watching
+// the app under load.  Switched off by default: ENABLED is read once from the system
+// property chess.metrics (-Dchess.metrics=true, or the --metrics option) and, being a
+// static final, lets the JIT remove the instrumentation entirely when it is false.
+// Each probe counts its calls in a striped LongAdder; timed probes also add their
+// duration to a histogram with HDR-style buckets: four per power of two, so a bucket
+// is at most 25% wide and the percentiles reported (the upper bound of the bucket
+// they fall in) are within that of the true value.  Search nodes are only counted, as
+// the time of a node includes its whole subtree.
+// When switched on the metrics are also published as the JMX MXBean
+// com.ija.chess:type=ChessMetrics (see ChessMetricsMXBean).
+
+public final class ChessMetrics implements ChessMetricsMXBean {
+
+	public static final boolean ENABLED = Boolean.getBoolean("chess.metrics");
+
+	public static final int VALIDATE_MOVE = 0;
+	public static final int KING_IN_CHECK = 1;
+	public static final int MOVE_PUTS_KING_IN_CHECK = 2;
+	public static final int KING_CHECKMATED = 3;
+	public static final int SEARCH_NODE = 4;
+	private static final String[] PROBES = {"validateMove", "kingInCheck", "movePutsKingInCheck", "kingCheckMated", "searchNode"};
+
+	private static final int SUB_BUCKET_BITS = 2;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private static final int BUCKETS = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+	private static final LongAdder[] counts = new LongAdder[PROBES.length];
+	private static final LongAdder[] totalNanos = new LongAdder[PROBES.length];
+	private static final LongAdder[][] histograms = new LongAdder[PROBES.length][];
+	private static final LongAccumulator[] maxNanos = new LongAccumulator[PROBES.length];
+
+	private static final ChessMetrics MXBEAN = new ChessMetrics();
+
+	static {
+		if (ENABLED) {
+			LongBinaryOperator max = new LongBinaryOperator() {
+				public long applyAsLong(long left, long right) {
+					return Math.max(left, right);
+				}
+			};
+			for (int probe = 0; probe < PROBES.length; probe++) {
+				counts[probe] = new LongAdder();
+				totalNanos[probe] = new LongAdder();
+				maxNanos[probe] = new LongAccumulator(max, 0L);
+				histograms[probe] = new LongAdder[BUCKETS];
+				for (int bucket = 0; bucket < BUCKETS; bucket++) {
+					histograms[probe][bucket] = new LongAdder();
+				}
+			}
+			try {
+				ManagementFactory.getPlatformMBeanServer().registerMBean(MXBEAN, new ObjectName("com.ija.chess:type=ChessMetrics"));
+			} catch (JMException ex) {
+				System.err.println("Chess metrics are not published over JMX: " + ex.getMessage());
+			}
+		}
+	}
+
+	private ChessMetrics() {
+	}
+
+	public static void count(int probe) {
+		// one more call of an untimed probe (callers check ENABLED first)
+		counts[probe].increment();
+	}
+
+	public static void record(int probe, long startNanos) {
+		// one more call of a timed probe that started at startNanos (System.nanoTime)
+		long nanos = Math.max(0L, System.nanoTime() - startNanos);
+		counts[probe].increment();
+		totalNanos[probe].add(nanos);
+		histograms[probe][bucket(nanos)].increment();
+		maxNanos[probe].accumulate(nanos);
+	}
+
+	private static int bucket(long nanos) {
+		// values below SUB_BUCKETS have a bucket each; above that the power of two picks
+		// a group of SUB_BUCKETS buckets and the next bits below the top bit pick one of them
+		if (nanos < SUB_BUCKETS) {
+			return (int) nanos;
+		}
+		int topBit = 63 - Long.numberOfLeadingZeros(nanos);
+		int shift = topBit - SUB_BUCKET_BITS;
+		return (shift + 1) * SUB_BUCKETS + (int) ((nanos >>> shift) & (SUB_BUCKETS - 1));
+	}
+
+	private static long bucketUpperBound(int bucket) {
+		// the largest value falling in the bucket
+		if (bucket < SUB_BUCKETS) {
+			return bucket;
+		}
+		int shift = bucket / SUB_BUCKETS - 1;
+		long low = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+		return low + (1L << shift) - 1;
+	}
+
+	private static long percentile(int probe, double fraction) {
+		// the upper bound of the bucket holding the value at the fraction of the recorded calls
+		// (but no more than the largest value recorded)
+		long[] snapshot = new long[BUCKETS];
+		long total = 0;
+		for (int bucket = 0; bucket < BUCKETS; bucket++) {
+			snapshot[bucket] = histograms[probe][bucket].sum();
+			total += snapshot[bucket];
+		}
+		if (total == 0) {
+			return 0;
+		}
+		long rank = (long) Math.ceil(fraction * total);
+		long seen = 0;
+		for (int bucket = 0; bucket < BUCKETS; bucket++) {
+			seen += snapshot[bucket];
+			if (seen >= Math.max(1L, rank)) {
+				return Math.min(bucketUpperBound(bucket), maxNanos[probe].get());
+			}
+		}
+		return maxNanos[probe].get();
+	}
+
+	public static ChessMetricsMXBean get() {
+		return MXBEAN;
+	}
+
+	public String[] getProbes() {
+		return PROBES.clone();
+	}
+
+	public long[] getCounts() {
+		long[] values = new long[PROBES.length];
+		for (int probe = 0; ENABLED && probe < PROBES.length; probe++) {
+			values[probe] = counts[probe].sum();
+		}
+		return values;
+	}
+
+	public long[] getMeanNanos() {
+		long[] values = new long[PROBES.length];
+		for (int probe = 0; ENABLED && probe < PROBES.length; probe++) {
+			values[probe] = totalNanos[probe].sum() / Math.max(1L, counts[probe].sum());
+		}
+		return values;
+	}
+
+	public long[] getMedianNanos() {
+		long[] values = new long[PROBES.length];
+		for (int probe = 0; ENABLED && probe < PROBES.length; probe++) {
+			values[probe] = percentile(probe, 0.5);
+		}
+		return values;
+	}
+
+	public long[] getP99Nanos() {
+		long[] values = new long[PROBES.length];
+		for (int probe = 0; ENABLED && probe < PROBES.length; probe++) {
+			values[probe] = percentile(probe, 0.99);
+		}
+		return values;
+	}
+
+	public long[] getMaxNanos() {
+		long[] values = new long[PROBES.length];
+		for (int probe = 0; ENABLED && probe < PROBES.length; probe++) {
+			values[probe] = maxNanos[probe].get();
+		}
+		return values;
+	}
+
+	public String getReport() {
+		// one line per probe; the times of untimed probes (search nodes) are left out
+		if (!ENABLED) {
+			return "Statistics are switched off (run with --metrics or -Dchess.metrics=true)";
+		}
+		StringBuilder report = new StringBuilder();
+		report.append(String.format("%-22s %12s %10s %10s %10s %10s %12s", "probe", "count", "mean ns", "p50 ns", "p90 ns", "p99 ns", "max ns"));
+		for (int probe = 0; probe < PROBES.length; probe++) {
+			report.append(System.lineSeparator());
+			long count = counts[probe].sum();
+			if (probe == SEARCH_NODE) {
+				report.append(String.format("%-22s %12d", PROBES[probe], count));
+				continue;
+			}
+			report.append(String.format("%-22s %12d %10d %10d %10d %10d %12d", PROBES[probe], count,
+					totalNanos[probe].sum() / Math.max(1L, count), percentile(probe, 0.5), percentile(probe, 0.9),
+					percentile(probe, 0.99), maxNanos[probe].get()));
+		}
+		return report.toString();
+	}
+
+	public void reset() {
+		// start counting afresh (calls recorded at the same time may be partly kept)
+		for (int probe = 0; ENABLED && probe < PROBES.length; probe++) {
+			counts[probe].reset();
+			totalNanos[probe].reset();
+			maxNanos[probe].reset();
+			for (int bucket = 0; bucket < BUCKETS; bucket++) {
+				histograms[probe][bucket].reset();
+			}
+		}
+	}
+
+}
@@ -0,0 +1,25 @@
+package com.ija.chess;
+
+// the JMX view of ChessMetrics, registered as com.ija.chess:type=ChessMetrics when
+// metrics are switched on.  Every array is indexed like getProbes(); times are in
+// nanoseconds and percentiles are bucket upper bounds (see ChessMetrics).
+
+public interface ChessMetricsMXBean {
+
+	String[] getProbes();
+
+	long[] getCounts();
+
+	long[] getMeanNanos();
+
+	long[] getMedianNanos();
+
+	long[] getP99Nanos();
+
+	long[] getMaxNanos();
+
+	String getReport();
+
+	void reset();
+
+}
@@ -1,26 +1,27 @@
 package com.ija.chess;
 
 import java.util.Map;
-import java.util.HashMap;
-import java.util.Set;
-import java.util.HashSet;
 import java.util.List;
 import java.util.ArrayList;
-import java.util.Map.Entry;
 import java.awt.Point;
 
 
 public class ChessMove {
 	
-	private Map<Point, ChessPiece> board;
+	private ChessPosition position;
 	private Map<ChessPiece, Point> capturedPiecesMap;
-	private ChessPieceColor currentColor;
-	//private Map<Point, ChessPiece> modifiedBoard;
 	
 	private List<String> errorList = new ArrayList<String>();
-	private Set<Map.Entry<Point,ChessPiece>> piecesCheckingKingSet = new HashSet<Map.Entry<Point,ChessPiece>>();
-	private boolean doKingCastleLeftRook = false;
-	private boolean doKingCastleRightRook = false;
+	// the rule the last validated move broke; its message is only rendered on request
+	private MoveViolation violation = MoveViolation.NONE;
+	private ChessPiece violationPiece = null;
+	private ChessPiece violationTargetPiece = null;
+	private int violationFrom = ChessPosition.NO_SQUARE;
+	private int violationTo = ChessPosition.NO_SQUARE;
+	private boolean violationHasPoint = false;
+	private int violationX = 0;
+	private int violationY = 0;
+	private int lastMove = MoveCode.NONE;
 	
 	// Formatted tring constants for error messages
 	private static final String noPieceToMove = "Cannot move from %s since there is no chess piece at that location";
@@ -45,130 +46,213 @@ public class ChessMove {
 	
 	
 	
-	public ChessMove(Map<Point, ChessPiece> board, Map capturedPiecesMap, ChessPieceColor currentColor) {
+	
+	
+	public ChessMove(Map<Point, ChessPiece> board, Map<ChessPiece, Point> capturedPiecesMap, ChessPieceColor currentColor) {
+		this(ChessPosition.fromBoardMap(board), capturedPiecesMap, currentColor);
+	}
+	
+	public ChessMove(ChessPosition position, Map<ChessPiece, Point> capturedPiecesMap, ChessPieceColor currentColor) {
 
-		this.board = board;
+		this.position = position;
 		this.capturedPiecesMap = capturedPiecesMap;
-		this.currentColor = currentColor;
+		this.position.setSideToMove(currentColor);
 	}
 		
 	public ChessPieceColor getCurrentColor() {
-		return this.currentColor;
+		return position.getSideToMove();
 	}
 	
 	public void setCurrentColor(ChessPieceColor currentColor) {
-		this.currentColor = currentColor;
+		position.setSideToMove(currentColor);
 	}
 	
 	public List<String> getErrorList() {
+		// the messages of the last validation (rendered here, on first request)
+		if (errorList.isEmpty() && violation != MoveViolation.NONE) {
+			errorList.add(getViolationMessage());
+		}
 		return this.errorList;
 	}
 	
+	public MoveViolation getViolation() {
+		// the rule the last validated move broke (MoveViolation.NONE if it was legal)
+		return this.violation;
+	}
+	
+	public String getViolationMessage() {
+		// the message for getViolation() (null if the move was legal)
+		String piece = ChessUtil.longFormatChessPiece(violationPiece);
+		String point = violationHasPoint ? violationX + "," + violationY : null;
+		String from = (violationFrom == ChessPosition.NO_SQUARE) ? point : ChessUtil.formatSquare(violationFrom);
+		String to = (violationTo == ChessPosition.NO_SQUARE) ? null : ChessUtil.formatSquare(violationTo);
+		switch (violation) {
+		case NO_PIECE_TO_MOVE: return String.format(noPieceToMove, from);
+		case WRONG_COLOR: return String.format(wrongColorMove, piece, from);
+		case TARGET_OFF_BOARD: return String.format(wrongTargetOutOfBounds, point);
+		case BISHOP_PATH: return String.format(wrongMovePathBishop, piece, from, to);
+		case ROOK_PATH: return String.format(wrongMovePathRook, piece, from, to);
+		case KNIGHT_PATH: return String.format(wrongMovePathKnight, piece, from, to);
+		case QUEEN_PATH: return String.format(wrongMovePathQueen, piece, from, to);
+		case PAWN_ADVANCE: return String.format(wrongMovePathPawn, piece, from, to, updownRulePawn);
+		case PAWN_CAPTURE: return String.format(wrongMovePathPawn, piece, from, to, diagRulePawn);
+		case KING_PATH: return String.format(wrongMovePathKing, piece, from, to);
+		case CASTLE_LEFT_ROOK: return String.format(wrongMoveCastleKing, piece, from, to, castleRuleLeftRook);
+		case CASTLE_RIGHT_ROOK: return String.format(wrongMoveCastleKing, piece, from, to, castleRuleRightRook);
+		case PATH_BLOCKED: return String.format(wrongMovePieceInTheWay, piece, from, to);
+		case TARGET_OWN_PIECE: return String.format(wrongCaptureTarget, piece, from, to, ChessUtil.longFormatChessPiece(violationTargetPiece));
+		case KING_IN_CHECK: return String.format(wrongMoveKingUnderCheck, piece, from, to);
+		default: return null;
+		}
+	}
+	
+	private void reject(MoveViolation reason, int current, int target) {
+		// record why a move between two board squares is rejected (the pieces are kept so the
+		// message can still be rendered after the position changes)
+		violation = reason;
+		violationPiece = position.pieceAt(current);
+		violationTargetPiece = position.pieceAt(target);
+		violationFrom = current;
+		violationTo = target;
+		violationHasPoint = false;
+	}
+	
+	private void reject(MoveViolation reason, Point point) {
+		// record why a move is rejected when only one (possibly off-board) coordinate is known
+		violation = reason;
+		violationPiece = (reason == MoveViolation.WRONG_COLOR) ? position.pieceAt(point) : null;
+		violationTargetPiece = null;
+		violationFrom = ChessPosition.NO_SQUARE;
+		violationTo = ChessPosition.NO_SQUARE;
+		violationHasPoint = (point != null);
+		if (point != null) {
+			violationX = point.x;
+			violationY = point.y;
+		}
+	}
+	
+	public ChessPosition getPosition() {
+		return this.position;
+	}
+	
 	public Map<Point, ChessPiece> getBoard() {
-		return this.board;
+		// Map adapter of the position (for display)
+		return position.toBoardMap();
 	}
 	
 	public Map<ChessPiece, Point> getCapturedPiecesMap() {
 		return this.capturedPiecesMap;
 	}
 	
+	public int getLastMove() {
+		// MoveCode of the last move made by executeMove (MoveCode.NONE before the first)
+		return this.lastMove;
+	}
+	
 	public void clearErrors() {
-		errorList.clear();
+		violation = MoveViolation.NONE;
+		if (!errorList.isEmpty()) {
+			errorList.clear();
+		}
 	}
 	
-	private boolean validateMove(Point current, Point target) {
+	boolean validateMove(Point current, Point target) {
 		//validate in accordance with exisiting rules. Return 
 		// true in accordance to rules being satisfied.
+		if (!ChessMetrics.ENABLED) {
+			return checkMoveRules(current, target);
+		}
+		long start = System.nanoTime();
+		boolean valid = checkMoveRules(current, target);
+		ChessMetrics.record(ChessMetrics.VALIDATE_MOVE, start);
+		return valid;
+	}
+	
+	private boolean checkMoveRules(Point current, Point target) {
 		clearErrors();
-		return (movePieceExists(current) &&
-								moveColorValid(current, currentColor) &&
-									boardBoundaryHonored(target, true) &&
-										movePathValid(current, target, true) &&
-											movePathClear(current, target, board, true) &&
-												moveCanLandOnTarget(current, target, true) &&
-												!movePutsKingInCheck(current, target, true));	
+		if (!(movePieceExists(current) &&
+				moveColorValid(current, getCurrentColor()) &&
+					boardBoundaryHonored(target, true))) {
+			return false;
+		}
+		int from = ChessPosition.squareOf(current);
+		int to = ChessPosition.squareOf(target);
+		return (movePathValid(from, to, true) &&
+					movePathClear(from, to, position, true) &&
+						moveCanLandOnTarget(from, to, true) &&
+							!movePutsKingInCheck(from, to, true));	
 	}
 	
 	public boolean executeMove(Point current, Point target) {
 		// validate the move according to rules methods and 
 		// if that clears then (1) if a target piece was captured add it to map
-		// AND (2) set move-from board location to null value and target board location
-		// to the piece that was moved to it
-		// ALSO: logic for execute king-castling (after validation).
-		// ALSO: logic for promotion of pawn (to Queen in all cases)
+		// AND (2) make the move on the position, which also handles king-castling
+		// and promotion of pawn (to Queen in all cases), and passes the turn to the opponent
 		boolean retVal = false;
 		if (validateMove(current, target)) {
-			ChessPiece currentPiece = board.get(current);
-			ChessPiece targetPiece = board.get(target);
-			int yCoord = (currentColor.getColor().equals(ChessPieceColor.WHITE.toString()) ? 0 : 7 );
-			System.out.println("ycoord =" + yCoord);
+			int move = moveFor(ChessPosition.squareOf(current), ChessPosition.squareOf(target));
+			ChessPiece targetPiece = position.pieceAt(target);
 			if (targetPiece != null) {
 				capturedPiecesMap.put(targetPiece, target);
 			}
-			if (doKingCastleRightRook) {
-				doKingCastleRightRook = false;
-				executeMove(new Point(7,yCoord), new Point(5,yCoord));
-				// move king to target
-				board.put(target, currentPiece);
-				// clear king original spot
-				board.put(current, null);
-			}
-			else if (doKingCastleLeftRook) {
-				doKingCastleLeftRook = false;
-				executeMove(new Point(0,yCoord), new Point(3,yCoord));
-				// move king to target
-				board.put(target, currentPiece);
-				// clear king original spot
-				board.put(current, null);
+			position.makeMove(move);
+			position.clearUndoHistory();
+			lastMove = move;
+			retVal = true;
+		}
+		return retVal;
+	}
+	
+	int moveFor(int current, int target) {
+		// MoveCode encoding of a from/to pair on the current position: a two-square King move is
+		// a castle and a Pawn reaching the far end is promoted to Queen.
+		ChessPiece piece = position.pieceAt(current);
+		int flags = position.isEmpty(target) ? MoveCode.NONE : MoveCode.CAPTURE;
+		int dx = ChessPosition.fileOf(target) - ChessPosition.fileOf(current);
+		if (piece.getType().equals(ChessPieceType.KING) && Math.abs(dx) == 2) {
+			flags |= MoveCode.CASTLE;
+		}
+		else if (piece.getType().equals(ChessPieceType.PAWN)) {
+			int promotionRank = (piece.getColor().equals(ChessPieceColor.WHITE) ? 7 : 0);
+			if (ChessPosition.rankOf(target) == promotionRank) {
+				return MoveCode.encode(current, target, ChessPieceType.QUEEN, flags);
 			}
-			else {
-				// if Pawn gets makes it to the other end, assume promotion to QUEEN.
-				if (currentPiece.getType().equals(ChessPieceType.PAWN) && target.y == yCoord) {
-					ChessPiece promotedPiece = new ChessPiece(ChessPieceType.QUEEN, currentColor);
-					board.put(target, promotedPiece);
-				}
-				else {
-					board.put(target, board.get(current));	
-				}
-				board.put(current, null);	
+			if (Math.abs(target - current) == 16) {
+				flags |= MoveCode.DOUBLE_PAWN_PUSH;
 			}
 		}
-		return retVal;
+		return MoveCode.encode(current, target, flags);
 	}
 	
-	private boolean movePathValid(Point current, Point target, boolean recordErrors) {
+	private boolean movePathValid(int current, int target, boolean recordErrors) {
 		// make sure that the piece type in question can move to a new x,y pair on the 
 		// board in accordance to the move roles.
 		// This is done based on the piece type (e.g. pawn, king, bishop, etc) of the piece being moved
-		ChessPiece pieceToMove = board.get(current);
+		// with the geometry looked up in ChessTables
+		ChessPiece pieceToMove = position.pieceAt(current);
 		ChessPieceType type = pieceToMove.getType();
-		int dx = Math.abs(target.x - current.x);
-		int dy = Math.abs(target.y - current.y);
+		int currentX = ChessPosition.fileOf(current);
+		int currentY = ChessPosition.rankOf(current);
+		int targetX = ChessPosition.fileOf(target);
+		int targetY = ChessPosition.rankOf(target);
 		boolean validSoFar = false;
 		switch (type) {
 		   case BISHOP:
 			   //check for diagonal move
-		    	//if (dx == 0.0 || dy == 0.0 || Math.abs(dx) == Math.abs(dy) ) {
-			    if (dx == dy) {
+			    if (ChessTables.LINE[current][target] == ChessTables.DIAGONAL) {
 		    		validSoFar = true;
 		    	}
 		    	else if (recordErrors){
-		    		errorList.add(String.format(wrongMovePathBishop, 
-		    			ChessUtil.longFormatChessPiece(pieceToMove),
-		    			ChessUtil.formatPoint(current),
-		    			ChessUtil.formatPoint(target)));
+		    		reject(MoveViolation.BISHOP_PATH, current, target);
 		    	}
 		    	break;
 		   case ROOK:
 			   // check for vertical or horizontal move
-			   if (current.x == target.x || current.y == target.y) {
+			   if (ChessTables.LINE[current][target] == ChessTables.ORTHOGONAL) {
 				   validSoFar = true;
 			   }
 			   else if (recordErrors) {
-				   errorList.add(String.format(wrongMovePathRook, 
-		    			ChessUtil.longFormatChessPiece(pieceToMove),
-		    			ChessUtil.formatPoint(current),
-		    			ChessUtil.formatPoint(target)));
+				   reject(MoveViolation.ROOK_PATH, current, target);
 			   }
 			   break;
 		   case KNIGHT:
@@ -176,27 +260,21 @@ public class ChessMove {
 			   // (1) move left/right 1 (along X-axis) AND move up/down 2 (along Y-axis)
 			   // (2) move left/right 2 (along X-axis) AND move up/down 1 (along Y-axis)
 			   			   
-			   if ((dx == 1 && dy == 2) || (dx == 2 && dy == 1 )) {
+			   if ((ChessTables.KNIGHT_ATTACKS[current] & (1L << target)) != 0L) {
 				   validSoFar = true;
 			   }
 			   else if (recordErrors) {
-				   errorList.add(String.format(wrongMovePathKnight, 
-		    			ChessUtil.longFormatChessPiece(pieceToMove),
-		    			ChessUtil.formatPoint(current),
-		    			ChessUtil.formatPoint(target)));
+				   reject(MoveViolation.KNIGHT_PATH, current, target);
 			   }
 			   break;
 		   case QUEEN:
 			   // can move (1) horizontally (along X-axis) (2) vertically (along y-axis) OR
 			   // (3) diagonally
-			   if (current.x == target.x || current.y == target.y || dx == dy) {
+			   if (ChessTables.LINE[current][target] != ChessTables.NO_LINE) {
 				   validSoFar = true;
 			   }
 			   else if (recordErrors){				   
-				   errorList.add(String.format(wrongMovePathQueen, 
-		    			ChessUtil.longFormatChessPiece(pieceToMove),
-		    			ChessUtil.formatPoint(current),
-		    			ChessUtil.formatPoint(target)));
+				   reject(MoveViolation.QUEEN_PATH, current, target);
 			   }
 			   break;
 		   case PAWN:
@@ -205,35 +283,33 @@ public class ChessMove {
 			   // (2) up-two WHITE/ down-two BLACK if it hasn't made a move and there is no other piece at target
 			   // (3) diag-up-left WHITE/ diag-down-left BLACK if still on the board boundary and there is an opposing piece at target (capture it)
 			   // (4) diag-up-right WHITE/ diag-down-right BLACK if still on the board boundary and there is an opposing piece at target (capture it)
-			   if (target.x == current.x) {  //up-one
-				   if (((target.y - current.y) == (currentColor.equals(ChessPieceColor.WHITE) ? 1 : -1))) {
+			   int forward = (pieceToMove.getColor().equals(ChessPieceColor.WHITE) ? 1 : -1);
+			   ChessPiece targetPiece = position.pieceAt(target);
+			   if (targetX == currentX) {  //up-one
+				   if ((targetY - currentY) == forward) {
 					  validSoFar = true;
 				   }
-				   else if (((target.y - current.y) == (currentColor.equals(ChessPieceColor.WHITE) ? 2 : -2))  && pieceToMove.numberOfMoves == 0 ) { //up-two if no other moves were made
+				   else if ((targetY - currentY) == 2 * forward && pieceToMove.getNumberOfMoves() == 0 ) { //up-two if no other moves were made
 					  validSoFar = true;
 				   }
-				   if (validSoFar && board.get(target)== null) { //make sure there's no other pieces in the way
-					   validSoFar = true;
+				   if (targetPiece != null) { //make sure there's no other pieces in the way
+					   validSoFar = false;
 				   }
 			   }
 			   // diagonal-up WHITE/diagonal-down BLACK move if there is opposing color piece to capture
-			   else if (((target.y - current.y) == (currentColor.equals(ChessPieceColor.WHITE) ? 1 : -1)) && dx == 1 ) {
-				   if (board.get(target) != null && !board.get(target).getColor().equals(currentColor)) {
+			   else if ((ChessTables.PAWN_ATTACKS[pieceToMove.getColor().ordinal()][current] & (1L << target)) != 0L) {
+				   if (targetPiece != null && !targetPiece.getColor().equals(pieceToMove.getColor())) {
 					   validSoFar = true;
 				   }
 			   }
 			   if ((!validSoFar) && recordErrors) {
-				   errorList.add(String.format(wrongMovePathPawn, 
-			    			ChessUtil.longFormatChessPiece(pieceToMove),
-			    			ChessUtil.formatPoint(current),
-			    			ChessUtil.formatPoint(target),
-			    			diagRulePawn));
+				   reject((targetX == currentX ? MoveViolation.PAWN_ADVANCE : MoveViolation.PAWN_CAPTURE), current, target);
 			   }
 			   
 			   break;
 		   case KING:
 			   //allow single vertical, horizontal or diagonal shift
-			   if (dx <= 1 && dy <=1) {
+			   if ((ChessTables.KING_ATTACKS[current] & (1L << target)) != 0L) {
 				   validSoFar = true;
 			   }
 			   //test for allowing King & Rook to castle.
@@ -241,59 +317,42 @@ public class ChessMove {
 			   // it can castle with left rook (X=0) or right rook (X-7) provided
 			   // (1) there is clear space between them and the rook in question has
 			   // not moved.
-			   
-			   if (pieceToMove.getNumberOfMoves() == 0 && current.x == 4) {
+			   else if (pieceToMove.getNumberOfMoves() == 0 && currentX == 4 && targetY == currentY && (targetX == 2 || targetX == 6)) {
 			      // castle King with left rook provided that neither piece has moved and there
 			       // is clear space between
-				  if (target.x == 2) {	 
-					       
-					 ChessPiece pieceLeftRookPos = board.get(new Point(0, current.y));
-					 if (pieceLeftRookPos.numberOfMoves == 0 && pieceLeftRookPos.getType().equals(ChessPieceType.ROOK) &&
-							 board.get(new Point(1, current.y)) == null &&
-							   board.get(new Point(2, current.y)) == null &&
-								 board.get(new Point(3, current.y)) == null)
+				  if (targetX == 2) {	 
+					 if (castleRookReady(ChessPosition.square(0, currentY), pieceToMove.getColor()) &&
+							 position.isEmpty(ChessPosition.square(1, currentY)) &&
+							   position.isEmpty(ChessPosition.square(2, currentY)) &&
+								 position.isEmpty(ChessPosition.square(3, currentY)))
 					 {
 						 validSoFar = true;
-						 doKingCastleLeftRook = true;
 					 }
 					 else if (recordErrors){
-						 errorList.add(String.format(wrongMoveCastleKing, 
-					    			ChessUtil.longFormatChessPiece(pieceToMove),
-					    			ChessUtil.formatPoint(current),
-					    			ChessUtil.formatPoint(target),
-					    			castleRuleLeftRook));
+						 reject(MoveViolation.CASTLE_LEFT_ROOK, current, target);
 					 }
 					 
 				  }
 				  
 				   // castle King with right rook provided that neither piece has moved and there
 				   // is clear space between
-				  else if (target.x == 6)  {
-					 ChessPiece pieceRightRookPos = board.get(new Point(7, current.y));
-					 if (pieceRightRookPos.numberOfMoves == 0 && pieceRightRookPos.getType().equals(ChessPieceType.ROOK) && 
-							 board.get(new Point(5, current.y)) == null &&
-							   board.get(new Point(6, current.y)) == null )
+				  else {
+					 if (castleRookReady(ChessPosition.square(7, currentY), pieceToMove.getColor()) && 
+							 position.isEmpty(ChessPosition.square(5, currentY)) &&
+							   position.isEmpty(ChessPosition.square(6, currentY)))
 					 {
 						 validSoFar = true;
-						 doKingCastleRightRook = true;
 					 }
 					 else if (recordErrors){
-						 errorList.add(String.format(wrongMoveCastleKing, 
-					    			ChessUtil.longFormatChessPiece(pieceToMove),
-					    			ChessUtil.formatPoint(current),
-					    			ChessUtil.formatPoint(target),
-					    			castleRuleRightRook));
+						 reject(MoveViolation.CASTLE_RIGHT_ROOK, current, target);
 					 }
 					 
 				  }				 
 			   }
 			   
-			   else if ((!validSoFar) && recordErrors) {
+			   else if (recordErrors) {
 				// if not a one-shift move nor a castling move 
-				   errorList.add(String.format(wrongMovePathKing, 
-			    			ChessUtil.longFormatChessPiece(pieceToMove),
-			    			ChessUtil.formatPoint(current),
-			    			ChessUtil.formatPoint(target)));
+				   reject(MoveViolation.KING_PATH, current, target);
 			   }
 			   break;
 		   default:
@@ -303,15 +362,20 @@ public class ChessMove {
 		return validSoFar;
 	}
 	
+	private boolean castleRookReady(int rookSquare, ChessPieceColor color) {
+		// the rook taking part in a castle must be an unmoved rook of the King's color
+		ChessPiece rook = position.pieceAt(rookSquare);
+		return (rook != null && rook.getType().equals(ChessPieceType.ROOK) && rook.getColor().equals(color) &&
+				rook.getNumberOfMoves() == 0);
+	}
+	
 	private boolean moveColorValid(Point current, ChessPieceColor currentColor) {
 		// If its White(Black) turn to move and try to move a Black(White) piece then 
 		// rule is violated
-	    ChessPiece curPiece = board.get(current);
-	    boolean validFlag =  curPiece.getColor().name().equals(currentColor.name());
+	    ChessPiece curPiece = position.pieceAt(current);
+	    boolean validFlag =  curPiece.getColor().equals(currentColor);
 	    if (!validFlag) {
-	    	errorList.add(String.format(wrongColorMove, 
-	    			ChessUtil.longFormatChessPiece(curPiece),
-	    			ChessUtil.formatPoint(current)));
+	    	reject(MoveViolation.WRONG_COLOR, current);
 	    }
 	    return validFlag;
 	}
@@ -319,297 +383,314 @@ public class ChessMove {
 	private boolean movePieceExists(Point current) {
 		// ensure that there is a piece on the board at the coordinate FROM where 
 		// the move is taking place.
-		boolean existFlag = board.get(current) != null;
+		boolean existFlag = position.pieceAt(current) != null;
 		if (!existFlag) {
-			errorList.add(String.format(noPieceToMove,
-	    			ChessUtil.formatPoint(current)));
+			reject(MoveViolation.NO_PIECE_TO_MOVE, current);
 		}
 		return existFlag;
 	}
 
 	
-	private boolean movePathClear(Point current, Point target, Map<Point,ChessPiece> board,  boolean recordError) {
+	private boolean movePathClear(int current, int target, ChessPosition board,  boolean recordError) {
 		// ensure that there are no blocking the move path from the move-from
 		// coordinate to the move-to coordinates
 		// If piece is Knight then test passes, since it can jump over;
-		if (board.get(current).getType().equals(ChessPieceType.KNIGHT)) {
+		// PLEASE NOTE: the end-point is NOT considered since this is accounted for in moveCanLandOnTarget() method
+		if (board.pieceAt(current).getType().equals(ChessPieceType.KNIGHT)) {
 			return true;
 		}
-		// moving vertically (on an X coordinate).  If there's a piece in the way, then not clear
-		// PLEASE NOTE: the end-point is NOT considered since this is accounted for in moveCanCapturePiece(Point current, Point target) method
-		boolean validFlag = true;
-		if (current.x == target.x && current.y != target.y) {
-
-			int beg =  Math.min(current.y, target.y) + 1;
-			int end =  Math.max(current.y, target.y) - 1;
-			while (beg <= end) {
-
-				if (board.get(new Point(current.x, end--)) != null) {
-					validFlag = false;
-					break;
-				}
-			}
-		}
-		//moving horizontally on a Y coordinate. If there's a piece in the way, then not clear
-		// PLEASE NOTE: the end-point is NOT considered since this is accounted for in moveCanCapturePiece(Point current, Point target) method
-		else if (current.x != target.x && current.y == target.y) {
-
-			int beg =  Math.min(current.x, target.x) + 1;
-			int end =  Math.max(current.x, target.x) - 1;
-
-			while (beg <= end) {
-				if (board.get(new Point(beg++, current.y)) != null) {
-					validFlag = false;
-					break;
-				}
-			}
-		}
-        // moving diagonally; if a piece is in the way, then not clear
-		// PLEASE NOTE: the end-point is NOT considered since this is accounted for in moveCanCapturePiece(Point current, Point target) method
-		else if (Math.abs(current.x - target.x) == Math.abs(current.y - target.y)) {
-
-			int dx = (current.x >= target.x) ? -1 : 1;
-			int dy = (current.y >= target.y) ? -1 : 1;
-			int begX = current.x + dx;
-			int begY =  current.y + dy;
-
-			while ((dx == -1 && begX > (target.x)) || (dx == 1 && begX < (target.x))){
-				if (board.get(new Point(begX, begY)) != null) {			
-					validFlag = false;
-				}
-				begX += dx;
-				begY += dy;
-			}
-			
-		}
+		// only vertical, horizontal and diagonal moves have squares in between
+		boolean validFlag = (ChessTables.BETWEEN[current][target] & board.occupancy()) == 0L;
 		if (!validFlag && recordError) {
-			errorList.add(String.format(wrongMovePieceInTheWay, 
-	    			ChessUtil.longFormatChessPiece(board.get(current)),
-	    			ChessUtil.formatPoint(current),
-	    			ChessUtil.formatPoint(target)));
+			reject(MoveViolation.PATH_BLOCKED, current, target);
 		}
 
 		return validFlag;
 	}
 
 	
-	private boolean moveCanLandOnTarget(Point current, Point target, boolean recordError) {
+	private boolean moveCanLandOnTarget(int current, int target, boolean recordError) {
 		// allows move to target spot on chess board if there is no piece there or the piece on 
 		// target spot is opposite color (i.e. can capture)
-		boolean validFlag = (board.get(target) == null || !board.get(current).getColor().equals(board.get(target).getColor()));
+		ChessPiece currentPiece = position.pieceAt(current);
+		ChessPiece targetPiece = position.pieceAt(target);
+		boolean validFlag = (targetPiece == null || !currentPiece.getColor().equals(targetPiece.getColor()));
 		if (!validFlag && recordError) {
-			errorList.add(String.format(wrongCaptureTarget, 
-	    			ChessUtil.longFormatChessPiece(board.get(current)),
-	    			ChessUtil.formatPoint(current),
-	    			ChessUtil.formatPoint(target),
-	    			ChessUtil.longFormatChessPiece(board.get(target))));
+			reject(MoveViolation.TARGET_OWN_PIECE, current, target);
 		}
 		return validFlag;
 	}
 
 		
 	public boolean kingInCheck(Point kingLocation) {
-		// check and record (in a set) the opponent pieces (different color to King) to see if they have a path to capture the king
-		// if there is at least one such opponent piece then return true;
-		boolean inCheckFlag = false;
-		piecesCheckingKingSet.clear();
-		for (Map.Entry<Point,ChessPiece> mapEntry : board.entrySet()) {
-			ChessPiece  piece = mapEntry.getValue();
-			if (piece != null && !piece.getColor().equals(currentColor)) {
-				if (movePathClear(mapEntry.getKey(), kingLocation, board, false) && movePathValid(mapEntry.getKey(), kingLocation, false)) {
-					piecesCheckingKingSet.add(mapEntry);
-					inCheckFlag = true;;
-				}				
-			}
+		// is the King at kingLocation attacked by an opponent piece (different color to the side to move)?
+		if (!ChessMetrics.ENABLED) {
+			return kingAttacked(kingLocation);
 		}
-		return inCheckFlag;
-	}
-	
-	private boolean kingInCheck(Point kingLocation, Map<Point, ChessPiece> modBoard) {
-		// check the opponent pieces (different color to King) to see if they have a path to capture the king
-		// this is an overridden version of the method to see if the king is in check after a proposed move
-		// (which changes the board) and return true if it is.
-		boolean inCheckFlag = false;
-		for (Map.Entry<Point,ChessPiece> mapEntry : modBoard.entrySet()) {
-			ChessPiece  piece = mapEntry.getValue();
-			if (piece != null && !piece.getColor().equals(currentColor)) {
-				if (movePathClear(mapEntry.getKey(), kingLocation, modBoard, false) && movePathValid(mapEntry.getKey(), kingLocation, false)) {
-					inCheckFlag = true;
-				}				
-			}
+		long start = System.nanoTime();
+		boolean inCheck = kingAttacked(kingLocation);
+		ChessMetrics.record(ChessMetrics.KING_IN_CHECK, start);
+		return inCheck;
+	}
+	
+	private boolean kingAttacked(Point kingLocation) {
+		// the attack table answers the question
+		int kingSquare = ChessPosition.squareOf(kingLocation);
+		return kingSquare != ChessPosition.NO_SQUARE && position.isSquareAttacked(kingSquare, opponentColor());
+	}
+	
+	private ChessPieceColor opponentColor() {
+		return (getCurrentColor().equals(ChessPieceColor.WHITE) ? ChessPieceColor.BLACK : ChessPieceColor.WHITE);
+	}
+	
+	boolean movePutsKingInCheck(int current, int target, boolean recordErrors) {
+		if (!ChessMetrics.ENABLED) {
+			return moveExposesKing(current, target, recordErrors);
 		}
-		return inCheckFlag;
-	}
-	
-	private boolean checkIfPathToBlock(Point kingLocation) {
-		// this method checks to see if any other pieces of the checked King's color can be moved
-		// in order to cancel king-under-check condition
-		for (Map.Entry<Point,ChessPiece> checkPiecemapEntry : piecesCheckingKingSet) {
-			List<Point> blockingPoints = findPointsOnPath(checkPiecemapEntry, kingLocation);
-			for (Map.Entry<Point, ChessPiece> othermapEntry :board.entrySet()) {
-				if (othermapEntry != null && othermapEntry.getValue() != null && othermapEntry.getValue().getColor().equals(currentColor)) {
-				   for (Point blockPoint: blockingPoints) {
-					   if (movePathValid(othermapEntry.getKey(), blockPoint, false) &&
-							movePathClear(othermapEntry.getKey(), blockPoint, board, false) && 
-							   moveCanLandOnTarget(othermapEntry.getKey(), blockPoint, false) &&
-							    !movePutsKingInCheck(othermapEntry.getKey(), blockPoint, false)) 
-					   {
-					     return true;
-					   }
-				   }
-				}
+		long start = System.nanoTime();
+		boolean exposed = moveExposesKing(current, target, recordErrors);
+		ChessMetrics.record(ChessMetrics.MOVE_PUTS_KING_IN_CHECK, start);
+		return exposed;
+	}
+	
+	private boolean moveExposesKing(int current, int target, boolean recordErrors) {
+		// make the move on the position, get the King's location
+		// and determine if the move has put the King under check, then take the move back
+		ChessPieceColor color = getCurrentColor();
+		position.makeMove(moveFor(current, target));
+		int kingSquare = position.kingSquare(color);
+		boolean kingInCheckFlag = kingSquare != ChessPosition.NO_SQUARE &&
+				position.isSquareAttacked(kingSquare, (color.equals(ChessPieceColor.WHITE) ? ChessPieceColor.BLACK : ChessPieceColor.WHITE));
+		position.unmakeMove();
+		if (kingInCheckFlag && recordErrors) {
+			reject(MoveViolation.KING_IN_CHECK, current, target);
+		}
+		return kingInCheckFlag;
+		
+	}
+	
+
+	
+	public boolean kingCheckMated(Point kingLocation) {
+		// if king is currently under check and the side to move has no legal move (a King move,
+		// a block or a capture of the checking piece) then this is checkmate.
+		if (!ChessMetrics.ENABLED) {
+			return kingInCheck(kingLocation) && !hasLegalMove();
+		}
+		long start = System.nanoTime();
+		boolean checkmated = kingInCheck(kingLocation) && !hasLegalMove();
+		ChessMetrics.record(ChessMetrics.KING_CHECKMATED, start);
+		return checkmated;
+	}
+	
+	public GameStatus gameStatus() {
+		// CHECKMATE or STALEMATE if the side to move has no legal move, otherwise a draw by rule
+		// (repetition, fifty-move rule, insufficient material) or ONGOING
+		if (hasLegalMove()) {
+			if (position.repetitions() >= 2) {
+				return GameStatus.THREEFOLD_REPETITION;
 			}
+			if (position.isFiftyMoveDraw()) {
+				return GameStatus.FIFTY_MOVE_RULE;
+			}
+			return position.hasInsufficientMaterial() ? GameStatus.INSUFFICIENT_MATERIAL : GameStatus.ONGOING;
 		}
-		return false;
+		int kingSquare = position.kingSquare(getCurrentColor());
+		return (kingSquare != ChessPosition.NO_SQUARE && position.isSquareAttacked(kingSquare, opponentColor())) ?
+				GameStatus.CHECKMATE : GameStatus.STALEMATE;
 	}
 	
-	List<Point> findPointsOnPath(Map.Entry<Point, ChessPiece> checkingPieceEntry, Point target) {
-		// find the points on the path between a checking piece and the king under check and return
-		// as a list.   This list is used to determine if there are pieces that can block the checking piece
-		// by moving to those points.
-		List<Point> retVal = new ArrayList<Point>();
-		retVal.add(checkingPieceEntry.getKey());
-		int dx = Math.abs(target.x - checkingPieceEntry.getKey().x);
-		int dy = Math.abs(target.y - checkingPieceEntry.getKey().y);
-		ChessPieceType checkingType = checkingPieceEntry.getValue().getType();
-		if (checkingType.equals(ChessPieceType.ROOK) || checkingType.equals(ChessPieceType.QUEEN) ) {
-			if (dx == 0 && dy > 0) {
-				//king is on an upward vertical path from checking piece
-				if ((target.y - checkingPieceEntry.getKey().y) > 0) {
-					for (int begY = (checkingPieceEntry.getKey().y + 1); begY < target.y; begY++ ) {
-						retVal.add(new Point(target.x, begY));
-					}
-				}
-				//king is on an downward vertical path from checking piece
-				else {
-					for (int begY = (target.y - 1); begY >=  (checkingPieceEntry.getKey().y + 1); begY--  ) {
-						retVal.add(new Point(target.x, begY));
-					}
+	public boolean hasLegalMove() {
+		// does the side to move have any legal move?  The same moves as generateLegalMoves() are
+		// tried, King moves first, but the search stops at the first legal one.
+		ChessPieceColor color = getCurrentColor();
+		long own = position.occupancy(color);
+		long enemy = position.occupancy(opponentColor());
+		long enemyAttacks = position.attackedSquares(opponentColor());
+		int kingSquare = position.kingSquare(color);
+		if (kingSquare != ChessPosition.NO_SQUARE) {
+			// the King may not step onto an attacked square, nor along the line of a checking slider
+			long targets = ChessTables.KING_ATTACKS[kingSquare] & ~own & ~enemyAttacks;
+			while (targets != 0L) {
+				int to = Long.numberOfTrailingZeros(targets);
+				targets &= targets - 1;
+				if (kingSafeAfter(kingSquare, to, to)) {
+					return true;
 				}
-			} 
-			//horizontal path to king
-			else if (dx > 0 && dy == 0) {
-				//king is on an horizontal path to right of checking piece
-				if ((target.x - checkingPieceEntry.getKey().x) > 0) {
-					for (int begX = (checkingPieceEntry.getKey().x + 1); begX < target.x; begX++ ) {
-						retVal.add(new Point(begX, target.y));
+			}
+		}
+		long occupied = position.occupancy();
+		int count = position.pieceCount(color);
+		for (int i = 0; i < count; i++) {
+			int from = position.pieceSquare(color, i);
+			if (from == kingSquare) {
+				continue;
+			}
+			ChessPiece piece = position.pieceAt(from);
+			long targets;
+			if (piece.getType().equals(ChessPieceType.PAWN)) {
+				targets = position.attacksFrom(from, ChessPieceType.PAWN, color, 0L) & enemy;
+				int forward = (color.equals(ChessPieceColor.WHITE) ? 8 : -8);
+				int oneStep = from + forward;
+				if (oneStep >= 0 && oneStep < 64 && position.isEmpty(oneStep)) {
+					targets |= 1L << oneStep;
+					int twoStep = oneStep + forward;
+					if (piece.getNumberOfMoves() == 0 && twoStep >= 0 && twoStep < 64 && position.isEmpty(twoStep)) {
+						targets |= 1L << twoStep;
 					}
 				}
-				//king is on an horizontal path to left of checking piece
-				else {
-					for (int begX = (target.x - 1); begX >=  (checkingPieceEntry.getKey().x + 1); begX--  ) {
-						retVal.add(new Point(begX, target.y));
-					}
+			}
+			else {
+				targets = position.attacksFrom(from, piece.getType(), color, occupied) & ~own;
+			}
+			while (targets != 0L) {
+				int to = Long.numberOfTrailingZeros(targets);
+				targets &= targets - 1;
+				if (kingSafeAfter(from, to, kingSquare)) {
+					return true;
 				}
 			}
 		}
-		else if(checkingType.equals(ChessPieceType.BISHOP) || checkingType.equals(ChessPieceType.QUEEN)) {
-			// diagonal path to king
-			if (dx == dy) {
-				int begX = checkingPieceEntry.getKey().x + 1;
-				int begY = checkingPieceEntry.getKey().y + 1;
-				// king is on an upward rightward diagonal path from checking piece
-				if (target.x - checkingPieceEntry.getKey().x > 0 && target.y - checkingPieceEntry.getKey().y > 0) {
-					while (begX < target.x && begY < target.y) {
-						retVal.add(new Point(begX++, begY++));
-					}
+		// castling is tried last: it is the rarest way out
+		if (kingSquare != ChessPosition.NO_SQUARE) {
+			return (castleAllowed(kingSquare, color, 0) && kingSafeAfterCastle(kingSquare, 0)) ||
+					(castleAllowed(kingSquare, color, 7) && kingSafeAfterCastle(kingSquare, 7));
+		}
+		return false;
+	}
+	
+	public int generateLegalMoves(MoveBuffer out) {
+		// write every legal move of the side to move into the caller's buffer (it is cleared first)
+		// and return how many there are.  The same rules as validateMove() apply: one/two square pawn
+		// advances and diagonal captures, promotion (to Queen in all cases), castling with an unmoved rook,
+		// and no move may leave the King under check.  Moves are encoded as described in MoveCode.
+		out.clear();
+		ChessPieceColor color = getCurrentColor();
+		long own = position.occupancy(color);
+		long enemy = position.occupancy(opponentColor());
+		long occupied = position.occupancy();
+		long enemyAttacks = position.attackedSquares(opponentColor());
+		int kingSquare = position.kingSquare(color);
+		boolean inCheck = kingSquare != ChessPosition.NO_SQUARE && (enemyAttacks & (1L << kingSquare)) != 0L;
+		int count = position.pieceCount(color);
+		for (int i = 0; i < count; i++) {
+			int from = position.pieceSquare(color, i);
+			ChessPiece piece = position.pieceAt(from);
+			if (piece.getType().equals(ChessPieceType.PAWN)) {
+				generatePawnMoves(from, piece, enemy, kingSquare, out);
+				continue;
+			}
+			boolean kingMove = piece.getType().equals(ChessPieceType.KING);
+			long targets = position.attacksFrom(from, piece.getType(), color, occupied) & ~own;
+			if (kingMove) {
+				// the King can never step onto an attacked square, and unless it is in check
+				// (and so might step along the checking line) every other square is safe
+				targets &= ~enemyAttacks;
+			}
+			while (targets != 0L) {
+				int to = Long.numberOfTrailingZeros(targets);
+				targets &= targets - 1;
+				int flags = ((enemy & (1L << to)) != 0L) ? MoveCode.CAPTURE : MoveCode.NONE;
+				if (kingMove && !inCheck) {
+					out.add(MoveCode.encode(from, to, flags));
 				}
-				// king is on a downward rightward diagonal path from checking piece
-				else if (target.x - checkingPieceEntry.getKey().x > 0 && target.y - checkingPieceEntry.getKey().y < 0) {
-					while (begX < target.x && begY > target.y) {
-						retVal.add(new Point(begX++, begY--));
-					}
+				else {
+					addIfKingSafe(MoveCode.encode(from, to, flags), (kingMove ? to : kingSquare), out);
 				}
-				// king is on an upward leftward diagonal path from checking piece
-				else if (target.x - checkingPieceEntry.getKey().x < 0 && target.y - checkingPieceEntry.getKey().y > 0) {
-					while (begX > target.x && begY < target.y) {
-						retVal.add(new Point(begX--, begY++));
-					}
+			}
+			if (kingMove) {
+				int yCoord = ChessPosition.rankOf(from);
+				if (castleAllowed(from, color, 0) && kingSafeAfterCastle(from, 0)) {
+					out.add(MoveCode.encode(from, ChessPosition.square(2, yCoord), MoveCode.CASTLE));
 				}
-				// king is on downward leftward diagonal path from checking piece
-				else if (target.x - checkingPieceEntry.getKey().x < 0 && target.y - checkingPieceEntry.getKey().y < 0) {
-					while (begX > target.x && begY > target.y) {
-						retVal.add(new Point(begX--, begY--));
-					}
+				if (castleAllowed(from, color, 7) && kingSafeAfterCastle(from, 7)) {
+					out.add(MoveCode.encode(from, ChessPosition.square(6, yCoord), MoveCode.CASTLE));
 				}
 			}
 		}
-		return retVal;
+		return out.size();
 	}
 	
-	private boolean movePutsKingInCheck(Point current, Point target, boolean recordErrors) {
-		// produce a "new" modified board based on move, get the King's location on this board
-		// and determine if the move has put the King under check by calling KingInCheck()
-		Map<Point, ChessPiece> modifiedBoard = new HashMap<Point, ChessPiece>();
-		modifiedBoard.putAll(board);
-		ChessPiece pieceToMove = board.get(current);
-		modifiedBoard.put(target, pieceToMove);
-		modifiedBoard.put(current, null);		
-		Point kingLocation = null;
-		for (Map.Entry<Point,ChessPiece> mapEntry : modifiedBoard.entrySet()) {
-			if (mapEntry.getValue() != null && mapEntry.getValue().getType().equals( ChessPieceType.KING)  && mapEntry.getValue().getColor().equals(currentColor)) {
-				kingLocation = mapEntry.getKey();
-				break;
+	private void generatePawnMoves(int from, ChessPiece pawn, long enemy, int kingSquare, MoveBuffer out) {
+		// one/two square advances onto empty squares and diagonal captures of opposing pieces
+		boolean white = pawn.getColor().equals(ChessPieceColor.WHITE);
+		int forward = (white ? 8 : -8);
+		int promotionRank = (white ? 7 : 0);
+		int oneStep = from + forward;
+		if (oneStep >= 0 && oneStep < 64 && position.isEmpty(oneStep)) {
+			addPawnMove(from, oneStep, MoveCode.NONE, promotionRank, kingSquare, out);
+			int twoStep = oneStep + forward;
+			if (pawn.getNumberOfMoves() == 0 && twoStep >= 0 && twoStep < 64 && position.isEmpty(twoStep)) {
+				addPawnMove(from, twoStep, MoveCode.DOUBLE_PAWN_PUSH, promotionRank, kingSquare, out);
 			}
 		}
-		boolean kingInCheckFlag = kingInCheck(kingLocation, modifiedBoard);
-		if (kingInCheckFlag && recordErrors) {
-			errorList.add(String.format(wrongMoveKingUnderCheck, 
-	    			ChessUtil.longFormatChessPiece(pieceToMove),
-	    			ChessUtil.formatPoint(current),
-	    			ChessUtil.formatPoint(target)));
+		long captures = position.attacksFrom(from, ChessPieceType.PAWN, pawn.getColor(), 0L) & enemy;
+		while (captures != 0L) {
+			int to = Long.numberOfTrailingZeros(captures);
+			captures &= captures - 1;
+			addPawnMove(from, to, MoveCode.CAPTURE, promotionRank, kingSquare, out);
 		}
-		return kingInCheckFlag;
-		
 	}
 	
-
-	
-	public boolean kingCheckMated(Point kingLocation) {
-		// if king is currently under check and cannot make ANY of the otherwise-valid moves without
-	    // remaining under check then this is checkmate.
-		boolean checkMateFlag = true;
-		if (kingInCheck(kingLocation)) {
-			Point moveRightOne = new Point(kingLocation.x + 1, kingLocation.y);
-			Point moveLeftOne = new Point(kingLocation.x - 1, kingLocation.y);
-			Point moveUpOne = new Point(kingLocation.x, kingLocation.y + 1);
-			Point moveDownOne = new Point(kingLocation.x, kingLocation.y - 1);
-			Point moveDiagLeftUp = new Point(kingLocation.x - 1, kingLocation.y + 1);
-			Point moveDiagLeftDown = new Point(kingLocation.x - 1, kingLocation.y - 1);
-			Point moveDiagRightUp = new Point(kingLocation.x + 1, kingLocation.y + 1);
-			Point moveDiagRightDown = new Point(kingLocation.x + 1, kingLocation.y - 1);
-			
-			if ( (boardBoundaryHonored(moveRightOne, false) && moveCanLandOnTarget(kingLocation,moveRightOne,false) && !kingInCheck(moveRightOne)) ||
-				 (boardBoundaryHonored(moveLeftOne, false) && moveCanLandOnTarget(kingLocation,moveLeftOne,false) && !kingInCheck(moveLeftOne)) ||
-				  (boardBoundaryHonored(moveUpOne, false) && moveCanLandOnTarget(kingLocation,moveUpOne,false) && !kingInCheck(moveUpOne)) ||
-				   (boardBoundaryHonored(moveDownOne, false) && moveCanLandOnTarget(kingLocation,moveDownOne,false) && !kingInCheck(moveDownOne)) ||
-				    (boardBoundaryHonored(moveDiagLeftUp, false) && moveCanLandOnTarget(kingLocation,moveDiagLeftUp,false) && !kingInCheck(moveDiagLeftUp)) ||
-				     (boardBoundaryHonored(moveDiagLeftDown, false) && moveCanLandOnTarget(kingLocation,moveDiagLeftDown,false) && !kingInCheck(moveDiagLeftDown)) ||
-				      (boardBoundaryHonored(moveDiagRightUp, false) && moveCanLandOnTarget(kingLocation,moveDiagRightUp,false) && !kingInCheck(moveDiagRightUp)) ||
-				       (boardBoundaryHonored(moveDiagRightDown, false) && moveCanLandOnTarget(kingLocation,moveDiagRightDown,false) && !kingInCheck(moveDiagRightDown)) )
-			{
-				checkMateFlag = false;
-			} 	
+	private void addPawnMove(int from, int to, int flags, int promotionRank, int kingSquare, MoveBuffer out) {
+		if (ChessPosition.rankOf(to) == promotionRank) {
+			addIfKingSafe(MoveCode.encode(from, to, ChessPieceType.QUEEN, flags), kingSquare, out);
 		}
 		else {
-			checkMateFlag = false;
+			addIfKingSafe(MoveCode.encode(from, to, flags), kingSquare, out);
 		}
-		
-		if (checkMateFlag) {
-			checkMateFlag = !checkIfPathToBlock(kingLocation);
+	}
+	
+	private void addIfKingSafe(int move, int kingSquare, MoveBuffer out) {
+		// add the move unless it leaves the King (standing on kingSquare after the move) attacked
+		if (kingSafeAfter(MoveCode.from(move), MoveCode.to(move), kingSquare)) {
+			out.add(move);
 		}
-		
-		return checkMateFlag;
+	}
+	
+	private boolean kingSafeAfter(int from, int to, int kingSquare) {
+		// on the board as it would be after moving from -> to, does no opposing piece attack the King
+		// (kingSquare is where the King stands after the move)?  A piece captured on the target square
+		// no longer counts as an attacker.
+		if (kingSquare == ChessPosition.NO_SQUARE) {
+			return true;
+		}
+		long toBit = 1L << to;
+		long occupiedAfter = (position.occupancy() & ~(1L << from)) | toBit;
+		return (position.attackersTo(kingSquare, opponentColor(), occupiedAfter) & ~toBit) == 0L;
+	}
+	
+	private boolean kingSafeAfterCastle(int kingSquare, int rookFile) {
+		// kingSafeAfter for a castle: the Rook moves too, to the square the King passes over,
+		// where it may block a check along the home rank.  The squares involved are empty, so
+		// nothing is captured.
+		int yCoord = ChessPosition.rankOf(kingSquare);
+		int kingTo = ChessPosition.square((rookFile == 0) ? 2 : 6, yCoord);
+		int rookFrom = ChessPosition.square(rookFile, yCoord);
+		int rookTo = ChessPosition.square((rookFile == 0) ? 3 : 5, yCoord);
+		long occupiedAfter = (position.occupancy() & ~(1L << kingSquare) & ~(1L << rookFrom)) | (1L << kingTo) | (1L << rookTo);
+		return position.attackersTo(kingTo, opponentColor(), occupiedAfter) == 0L;
+	}
+	
+	private boolean castleAllowed(int kingSquare, ChessPieceColor color, int rookFile) {
+		// an unmoved King on its original square, an unmoved rook of its color on rookFile (0 or 7)
+		// and no pieces between them; whether the King ends up safe is checked separately
+		ChessPiece king = position.pieceAt(kingSquare);
+		if (king.getNumberOfMoves() != 0 || ChessPosition.fileOf(kingSquare) != 4) {
+			return false;
+		}
+		int rookSquare = ChessPosition.square(rookFile, ChessPosition.rankOf(kingSquare));
+		return castleRookReady(rookSquare, color) && (ChessTables.BETWEEN[kingSquare][rookSquare] & position.occupancy()) == 0L;
 	}
 	
 	public boolean canKingCastleWithLeftRook() {
 		ChessPiece king;
-		ChessPiece rook;
-		int yCoord = (currentColor.equals(ChessPieceColor.WHITE) ? 0 : 7);
-		king = board.get(new Point(4, yCoord));
-		rook = board.get(new Point(0, yCoord));
-		return (king != null && rook != null && king.getNumberOfMoves()== 0 && rook.getNumberOfMoves() == 0 && 
-				board.get(new Point(1, yCoord )) == null && board.get(new Point(2, yCoord )) == null && board.get(new Point(3, yCoord )) == null);
+		int yCoord = (getCurrentColor().equals(ChessPieceColor.WHITE) ? 0 : 7);
+		king = position.pieceAt(ChessPosition.square(4, yCoord));
+		return (king != null && king.getType().equals(ChessPieceType.KING) && king.getNumberOfMoves()== 0 &&
+				castleRookReady(ChessPosition.square(0, yCoord), getCurrentColor()) && 
+				position.isEmpty(ChessPosition.square(1, yCoord)) && position.isEmpty(ChessPosition.square(2, yCoord)) &&
+				position.isEmpty(ChessPosition.square(3, yCoord)));
 		
 		
 	}
@@ -617,12 +698,11 @@ public class ChessMove {
 	public boolean canKingCastleWithRightRook() {
 		
 		ChessPiece king;
-		ChessPiece rook;
-		int yCoord = (currentColor.equals(ChessPieceColor.WHITE) ? 0 : 7);
-		king = board.get(new Point(4, yCoord));
-		rook = board.get(new Point(7, yCoord));
-		return (king != null && rook != null && king.getNumberOfMoves()== 0 && rook.getNumberOfMoves() == 0 && 
-				board.get(new Point(5, yCoord )) == null && board.get(new Point(6, yCoord )) == null); 
+		int yCoord = (getCurrentColor().equals(ChessPieceColor.WHITE) ? 0 : 7);
+		king = position.pieceAt(ChessPosition.square(4, yCoord));
+		return (king != null && king.getType().equals(ChessPieceType.KING) && king.getNumberOfMoves()== 0 &&
+				castleRookReady(ChessPosition.square(7, yCoord), getCurrentColor()) && 
+				position.isEmpty(ChessPosition.square(5, yCoord)) && position.isEmpty(ChessPosition.square(6, yCoord))); 
 		
 	}
 	
@@ -630,8 +710,7 @@ public class ChessMove {
 		boolean boundaryHonoredFlag;
 		boundaryHonoredFlag = (target != null && target.x >= 0 && target.x <= 7 && target.y >= 0 && target.y <= 7 );
 		if (!boundaryHonoredFlag && recordError) {
-			errorList.add(String.format(wrongTargetOutOfBounds,
-	    			ChessUtil.formatPoint(target)));
+			reject(MoveViolation.TARGET_OFF_BOARD, target);
 		}
 		return boundaryHonoredFlag;
 	}
@@ -17,6 +17,13 @@ public class ChessPiece {
 		this.color = color;
 	}
 	
+	public ChessPiece(ChessPiece other) {
+		this(other.type, other.color);
+		this.numberOfMoves = other.numberOfMoves;
+		this.capturedAt = other.capturedAt;
+		this.underCheck = other.underCheck;
+	}
+	
 	public ChessPieceType getType() {
 		return type;
 	}
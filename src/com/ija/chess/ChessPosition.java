@@ -0,0 +1,718 @@
+package com.ija.chess;
+
+import java.awt.Point;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.HashMap;
+import java.util.Random;
+
+// bitboard representation of the chess board.  There is one 64-bit word per piece
+// type and color plus an occupancy word per color.  A square is indexed as y * 8 + x
+// (same x,y coordinates as used by the rest of the app, so White starts on y = 0).
+// The ChessPiece objects are also kept in a 64 entry array so that per-piece state
+// (e.g. numberOfMoves) survives moves.  The Map<Point, ChessPiece> board used by the
+// original code is only produced on demand (toBoardMap) for display purposes.
+// Moves (MoveCode ints) are applied in place with makeMove() and taken back with
+// unmakeMove(), which pops an undo record off a stack.  The stack starts with room for
+// a few moves and doubles when makeMove() fills it, so the many positions that only
+// ever hold a move or two between clearUndoHistory() calls (game sessions) stay small.
+// For each color the number of its pieces attacking every square is kept up to date
+// as pieces are put, removed, moved and taken back, so "is square X attacked by
+// color C" is a single bit test on attackedSquares[C].
+// Each color also has a piece list (the squares of its pieces) and an explicit King
+// square, so code that needs the pieces of one color does not scan the board.  A move
+// keeps the moved piece in its list slot and unmakeMove() restores a captured piece to
+// its old slot, so the lists can be iterated while moves are made and taken back.
+// The position's identity is a 64-bit Zobrist key (positionKey) covering the pieces,
+// side to move and castling rights (derived from numberOfMoves of the Kings and Rooks on
+// their original squares).  It is updated incrementally as pieces change and restored
+// from the undo stack on unmakeMove().  The en passant square is kept for FEN only and
+// is not part of the key: the rules have no en passant capture, so a Pawn advanced two
+// squares leaves the same position as one advanced twice by one square.
+// The halfmove clock (moves since the last capture or Pawn move) and the fullmove
+// number are kept as well, so that the whole game state can be written as FEN.
+// The keys of the positions before each move go into a ring buffer (keyHistory) that
+// outlives clearUndoHistory(), so repetitions can be found by comparing the current
+// key with the same-side entries since the last capture or Pawn move; together with
+// the halfmove clock and a material test this gives the draw rules (isDrawByRule).
+
+public class ChessPosition {
+
+	public static final int NO_SQUARE = -1;
+	// undo records a new position has room for (makeMove grows the stack as needed)
+	private static final int INITIAL_UNDO_CAPACITY = 16;
+	// positions remembered for repetitions: more than the 100 plies of the fifty-move rule
+	public static final int HISTORY_SIZE = 128;
+	private static final int HISTORY_MASK = HISTORY_SIZE - 1;
+	private static final long LIGHT_SQUARES = 0x55AA55AA55AA55AAL;
+
+	// castling rights bits
+	public static final int WHITE_CASTLE_RIGHT_ROOK = 1;
+	public static final int WHITE_CASTLE_LEFT_ROOK = 2;
+	public static final int BLACK_CASTLE_RIGHT_ROOK = 4;
+	public static final int BLACK_CASTLE_LEFT_ROOK = 8;
+
+	// the King and Rook original squares; castling rights can only change when one of them is touched
+	private static final long CASTLING_SQUARES = (1L << 0) | (1L << 4) | (1L << 7) | (1L << 56) | (1L << 60) | (1L << 63);
+
+	// Zobrist keys, generated once from a fixed seed so that keys are stable between runs
+	private static final long[][][] PIECE_KEYS = new long[2][6][64];
+	private static final long[] CASTLING_KEYS = new long[16];
+	private static final long BLACK_TO_MOVE_KEY;
+
+	static {
+		Random random = new Random(0x1A2B3C4D5E6FL);
+		for (int c = 0; c < 2; c++) {
+			for (int t = 0; t < 6; t++) {
+				for (int square = 0; square < 64; square++) {
+					PIECE_KEYS[c][t][square] = random.nextLong();
+				}
+			}
+		}
+		for (int i = 0; i < 16; i++) {
+			CASTLING_KEYS[i] = random.nextLong();
+		}
+		BLACK_TO_MOVE_KEY = random.nextLong();
+	}
+
+	private long[][] pieceBitboards = new long[2][6];
+	private long[] colorOccupancy = new long[2];
+	private long occupancy = 0L;
+	private ChessPiece[] squares = new ChessPiece[64];
+	private ChessPieceColor sideToMove = ChessPieceColor.WHITE;
+	private int castlingRights = 0;
+	private int enPassantSquare = NO_SQUARE;
+	private long key = CASTLING_KEYS[0];
+	private int halfmoveClock = 0;
+	private int fullmoveNumber = 1;
+
+	// per color: how many pieces attack each square, and the set of squares with a count above 0
+	private int[][] attackCounts = new int[2][64];
+	private long[] attackedSquares = new long[2];
+
+	// per color: squares of its pieces (pieceCount of them), the slot of each square in that list, and the King square
+	private int[][] pieceList = new int[2][64];
+	private int[] pieceCount = new int[2];
+	private int[] listIndex = new int[64];
+	private int[] kingSquares = {NO_SQUARE, NO_SQUARE};
+	// undo records of the moves made with makeMove(), indexed by ply
+	private int ply = 0;
+	private int[] undoMove = new int[INITIAL_UNDO_CAPACITY];
+	private ChessPiece[] undoMovedPiece = new ChessPiece[INITIAL_UNDO_CAPACITY];
+	private ChessPiece[] undoCapturedPiece = new ChessPiece[INITIAL_UNDO_CAPACITY];
+	private int[] undoCapturedIndex = new int[INITIAL_UNDO_CAPACITY];
+	private int[] undoCastlingRights = new int[INITIAL_UNDO_CAPACITY];
+	private int[] undoEnPassantSquare = new int[INITIAL_UNDO_CAPACITY];
+	private long[] undoKey = new long[INITIAL_UNDO_CAPACITY];
+	private int[] undoHalfmoveClock = new int[INITIAL_UNDO_CAPACITY];
+	// keys of the positions before each move (ring buffer; historyLength counts every move made)
+	private long[] keyHistory = new long[HISTORY_SIZE];
+	private int historyLength = 0;
+
+	public ChessPosition() {
+	}
+
+	public ChessPosition(ChessPosition other) {
+		// copy the bitboards and piece array of another position.  The ChessPiece
+		// objects themselves are shared.
+		for (int c = 0; c < 2; c++) {
+			System.arraycopy(other.pieceBitboards[c], 0, this.pieceBitboards[c], 0, 6);
+		}
+		System.arraycopy(other.colorOccupancy, 0, this.colorOccupancy, 0, 2);
+		System.arraycopy(other.squares, 0, this.squares, 0, 64);
+		for (int c = 0; c < 2; c++) {
+			System.arraycopy(other.attackCounts[c], 0, this.attackCounts[c], 0, 64);
+		}
+		System.arraycopy(other.attackedSquares, 0, this.attackedSquares, 0, 2);
+		for (int c = 0; c < 2; c++) {
+			System.arraycopy(other.pieceList[c], 0, this.pieceList[c], 0, 64);
+		}
+		System.arraycopy(other.pieceCount, 0, this.pieceCount, 0, 2);
+		System.arraycopy(other.listIndex, 0, this.listIndex, 0, 64);
+		System.arraycopy(other.kingSquares, 0, this.kingSquares, 0, 2);
+		this.occupancy = other.occupancy;
+		this.sideToMove = other.sideToMove;
+		this.castlingRights = other.castlingRights;
+		this.enPassantSquare = other.enPassantSquare;
+		this.key = other.key;
+		this.halfmoveClock = other.halfmoveClock;
+		this.fullmoveNumber = other.fullmoveNumber;
+		System.arraycopy(other.keyHistory, 0, this.keyHistory, 0, HISTORY_SIZE);
+		this.historyLength = other.historyLength;
+	}
+
+	public ChessPosition duplicate() {
+		// independent copy: unlike the copy constructor the ChessPiece objects are copied as
+		// well, so moves made on the copy (e.g. by another search thread) leave this position alone
+		ChessPosition copy = new ChessPosition(this);
+		for (int square = 0; square < 64; square++) {
+			if (copy.squares[square] != null) {
+				copy.squares[square] = new ChessPiece(copy.squares[square]);
+			}
+		}
+		return copy;
+	}
+
+	public static int square(int x, int y) {
+		return (y << 3) | x;
+	}
+
+	public static int squareOf(Point point) {
+		// square index of a board coordinate or NO_SQUARE if it is not on the board
+		if (point == null || point.x < ChessUtil.begBound || point.x > ChessUtil.endBound ||
+				point.y < ChessUtil.begBound || point.y > ChessUtil.endBound) {
+			return NO_SQUARE;
+		}
+		return square(point.x, point.y);
+	}
+
+	public static int fileOf(int square) {
+		return square & 7;
+	}
+
+	public static int rankOf(int square) {
+		return square >>> 3;
+	}
+
+	public static Point toPoint(int square) {
+		return (square == NO_SQUARE) ? null : new Point(fileOf(square), rankOf(square));
+	}
+
+	public static boolean onBoard(int x, int y) {
+		return x >= 0 && x <= 7 && y >= 0 && y <= 7;
+	}
+
+	public ChessPieceColor getSideToMove() {
+		return this.sideToMove;
+	}
+
+	public void setSideToMove(ChessPieceColor sideToMove) {
+		if (!sideToMove.equals(this.sideToMove)) {
+			key ^= BLACK_TO_MOVE_KEY;
+		}
+		this.sideToMove = sideToMove;
+	}
+
+	public long positionKey() {
+		return key;
+	}
+
+	public int getCastlingRights() {
+		return castlingRights;
+	}
+
+	public int getEnPassantSquare() {
+		// square skipped by a Pawn that just advanced two squares, or NO_SQUARE
+		return enPassantSquare;
+	}
+
+	public void setEnPassantSquare(int enPassantSquare) {
+		this.enPassantSquare = enPassantSquare;
+	}
+
+	public void refreshCastlingRights() {
+		// re-derive the castling rights from the Kings and Rooks on their original squares
+		// (needed only if numberOfMoves of a piece already on the board is changed directly)
+		int rights = computeCastlingRights();
+		key ^= CASTLING_KEYS[castlingRights] ^ CASTLING_KEYS[rights];
+		castlingRights = rights;
+	}
+
+	private int computeCastlingRights() {
+		int rights = 0;
+		for (int c = 0; c < 2; c++) {
+			int yCoord = (c == 0) ? 0 : 7;
+			ChessPiece king = squares[square(4, yCoord)];
+			if (king != null && king.getType().equals(ChessPieceType.KING) && king.getColor().ordinal() == c &&
+					king.getNumberOfMoves() == 0) {
+				if (unmovedRook(square(7, yCoord), c)) {
+					rights |= (c == 0) ? WHITE_CASTLE_RIGHT_ROOK : BLACK_CASTLE_RIGHT_ROOK;
+				}
+				if (unmovedRook(square(0, yCoord), c)) {
+					rights |= (c == 0) ? WHITE_CASTLE_LEFT_ROOK : BLACK_CASTLE_LEFT_ROOK;
+				}
+			}
+		}
+		return rights;
+	}
+
+	private boolean unmovedRook(int square, int c) {
+		ChessPiece rook = squares[square];
+		return rook != null && rook.getType().equals(ChessPieceType.ROOK) && rook.getColor().ordinal() == c &&
+				rook.getNumberOfMoves() == 0;
+	}
+
+	public int getHalfmoveClock() {
+		// moves (by either side) since the last capture or Pawn move
+		return halfmoveClock;
+	}
+
+	public void setHalfmoveClock(int halfmoveClock) {
+		this.halfmoveClock = halfmoveClock;
+	}
+
+	public int getFullmoveNumber() {
+		// starts at 1 and goes up after each Black move
+		return fullmoveNumber;
+	}
+
+	public void setFullmoveNumber(int fullmoveNumber) {
+		this.fullmoveNumber = fullmoveNumber;
+	}
+
+	public ChessPiece pieceAt(int square) {
+		return (square == NO_SQUARE) ? null : squares[square];
+	}
+
+	public ChessPiece pieceAt(Point point) {
+		return pieceAt(squareOf(point));
+	}
+
+	public long pieces(ChessPieceColor color, ChessPieceType type) {
+		return pieceBitboards[color.ordinal()][type.ordinal()];
+	}
+
+	public long occupancy(ChessPieceColor color) {
+		return colorOccupancy[color.ordinal()];
+	}
+
+	public long occupancy() {
+		return occupancy;
+	}
+
+	public boolean isEmpty(int square) {
+		return (occupancy & (1L << square)) == 0L;
+	}
+
+	public void putPiece(int square, ChessPiece piece) {
+		// place a piece on a square, replacing (not capturing) whatever was there
+		long bit = 1L << square;
+		long changed = (piece == null) == ((occupancy & bit) == 0L) ? 0L : bit;
+		long affected = beginAttackUpdate(bit, changed);
+		clearSquare(square);
+		if (piece != null) {
+			setSquare(square, piece);
+		}
+		endAttackUpdate(affected);
+		if ((bit & CASTLING_SQUARES) != 0L) {
+			refreshCastlingRights();
+		}
+	}
+
+	public ChessPiece removePiece(int square) {
+		// take the piece (if any) off a square and return it
+		long bit = 1L << square;
+		long affected = beginAttackUpdate(bit, occupancy & bit);
+		ChessPiece piece = clearSquare(square);
+		endAttackUpdate(affected);
+		if ((bit & CASTLING_SQUARES) != 0L) {
+			refreshCastlingRights();
+		}
+		return piece;
+	}
+
+	public void movePiece(int from, int to) {
+		// move the piece at from to the (empty) to square
+		putPiece(to, removePiece(from));
+	}
+
+	private void setSquare(int square, ChessPiece piece) {
+		// put a piece on an empty square, adding it at the end of its color's piece list
+		int c = piece.getColor().ordinal();
+		setSquareAt(square, piece, pieceCount[c]);
+	}
+
+	private void setSquareAt(int square, ChessPiece piece, int slot) {
+		// put a piece on an empty square at the given slot of its color's piece list (the piece
+		// currently in that slot, if any, goes to the end of the list)
+		long bit = 1L << square;
+		int c = piece.getColor().ordinal();
+		pieceBitboards[c][piece.getType().ordinal()] |= bit;
+		colorOccupancy[c] |= bit;
+		occupancy |= bit;
+		squares[square] = piece;
+		key ^= PIECE_KEYS[c][piece.getType().ordinal()][square];
+		if (slot < pieceCount[c]) {
+			int displaced = pieceList[c][slot];
+			pieceList[c][pieceCount[c]] = displaced;
+			listIndex[displaced] = pieceCount[c];
+		}
+		pieceList[c][slot] = square;
+		listIndex[square] = slot;
+		pieceCount[c]++;
+		if (piece.getType().equals(ChessPieceType.KING)) {
+			kingSquares[c] = square;
+		}
+	}
+
+	private ChessPiece clearSquare(int square) {
+		// take the piece (if any) off a square; the last piece of its color's list takes its slot
+		ChessPiece piece = squares[square];
+		if (piece != null) {
+			long mask = ~(1L << square);
+			int c = piece.getColor().ordinal();
+			pieceBitboards[c][piece.getType().ordinal()] &= mask;
+			colorOccupancy[c] &= mask;
+			occupancy &= mask;
+			squares[square] = null;
+			key ^= PIECE_KEYS[c][piece.getType().ordinal()][square];
+			int slot = listIndex[square];
+			int last = pieceList[c][--pieceCount[c]];
+			pieceList[c][slot] = last;
+			listIndex[last] = slot;
+			if (piece.getType().equals(ChessPieceType.KING) && kingSquares[c] == square) {
+				kingSquares[c] = NO_SQUARE;
+			}
+		}
+		return piece;
+	}
+
+	private void relocateSquare(int from, int to, ChessPiece piece) {
+		// move the piece on from to the empty to square, leaving piece there (the same piece, or
+		// the promoted/unpromoted one).  The piece keeps its slot in the piece list.
+		ChessPiece old = squares[from];
+		int c = old.getColor().ordinal();
+		long fromMask = ~(1L << from);
+		long toBit = 1L << to;
+		pieceBitboards[c][old.getType().ordinal()] &= fromMask;
+		pieceBitboards[c][piece.getType().ordinal()] |= toBit;
+		colorOccupancy[c] = (colorOccupancy[c] & fromMask) | toBit;
+		occupancy = (occupancy & fromMask) | toBit;
+		squares[from] = null;
+		squares[to] = piece;
+		key ^= PIECE_KEYS[c][old.getType().ordinal()][from] ^ PIECE_KEYS[c][piece.getType().ordinal()][to];
+		int slot = listIndex[from];
+		pieceList[c][slot] = to;
+		listIndex[to] = slot;
+		if (piece.getType().equals(ChessPieceType.KING)) {
+			kingSquares[c] = to;
+		}
+	}
+
+	public void makeMove(int move) {
+		// apply a (validated) move in place: captures, castling (the rook is moved as well),
+		// promotion and numberOfMoves are all handled, then the side to move changes.
+		// The state needed to take the move back is pushed onto the undo stack.
+		int from = MoveCode.from(move);
+		int to = MoveCode.to(move);
+		ChessPiece piece = squares[from];
+		long affected = beginMoveAttackUpdate(move);
+		if (ply == undoMove.length) {
+			growUndoStack();
+		}
+		undoMove[ply] = move;
+		undoMovedPiece[ply] = piece;
+		undoCapturedIndex[ply] = (squares[to] == null) ? 0 : listIndex[to];
+		undoCastlingRights[ply] = castlingRights;
+		undoEnPassantSquare[ply] = enPassantSquare;
+		undoKey[ply] = key;
+		undoHalfmoveClock[ply] = halfmoveClock;
+		keyHistory[historyLength++ & HISTORY_MASK] = key;
+		halfmoveClock = (squares[to] != null || piece.getType().equals(ChessPieceType.PAWN)) ? 0 : halfmoveClock + 1;
+		if (piece.getColor().equals(ChessPieceColor.BLACK)) {
+			fullmoveNumber++;
+		}
+		enPassantSquare = NO_SQUARE;
+		undoCapturedPiece[ply] = clearSquare(to);
+		ply++;
+		if (MoveCode.isPromotion(move)) {
+			relocateSquare(from, to, new ChessPiece(MoveCode.promotion(move), piece.getColor()));
+		}
+		else {
+			relocateSquare(from, to, piece);
+		}
+		piece.numberOfMoves++;
+		if (MoveCode.isCastle(move)) {
+			int rookFrom = castleRookFrom(to);
+			ChessPiece rook = squares[rookFrom];
+			relocateSquare(rookFrom, castleRookTo(to), rook);
+			rook.numberOfMoves++;
+		}
+		endAttackUpdate(affected);
+		if ((((1L << from) | (1L << to)) & CASTLING_SQUARES) != 0L) {
+			refreshCastlingRights();
+		}
+		if (MoveCode.isDoublePawnPush(move)) {
+			enPassantSquare = (from + to) >>> 1;
+		}
+		sideToMove = sideToMove.equals(ChessPieceColor.WHITE) ? ChessPieceColor.BLACK : ChessPieceColor.WHITE;
+		key ^= BLACK_TO_MOVE_KEY;
+	}
+
+	public void unmakeMove() {
+		// take back the last move made with makeMove()
+		int move = undoMove[ply - 1];
+		int from = MoveCode.from(move);
+		int to = MoveCode.to(move);
+		long affected = beginMoveAttackUpdate(move);
+		ply--;
+		ChessPiece piece = undoMovedPiece[ply];
+		if (MoveCode.isCastle(move)) {
+			int rookTo = castleRookTo(to);
+			ChessPiece rook = squares[rookTo];
+			relocateSquare(rookTo, castleRookFrom(to), rook);
+			rook.numberOfMoves--;
+		}
+		relocateSquare(to, from, piece);
+		piece.numberOfMoves--;
+		if (undoCapturedPiece[ply] != null) {
+			setSquareAt(to, undoCapturedPiece[ply], undoCapturedIndex[ply]);
+		}
+		endAttackUpdate(affected);
+		undoMovedPiece[ply] = null;
+		undoCapturedPiece[ply] = null;
+		castlingRights = undoCastlingRights[ply];
+		enPassantSquare = undoEnPassantSquare[ply];
+		key = undoKey[ply];
+		halfmoveClock = undoHalfmoveClock[ply];
+		historyLength--;
+		if (piece.getColor().equals(ChessPieceColor.BLACK)) {
+			fullmoveNumber--;
+		}
+		sideToMove = piece.getColor();
+	}
+
+	private long beginMoveAttackUpdate(int move) {
+		// the squares a move (or its take back) puts pieces on or takes them off, and the subset
+		// of those whose occupancy changes (a capture square stays occupied)
+		int from = MoveCode.from(move);
+		int to = MoveCode.to(move);
+		long touched = (1L << from) | (1L << to);
+		long changed = (1L << from) | (MoveCode.isCapture(move) ? 0L : (1L << to));
+		if (MoveCode.isCastle(move)) {
+			long rookSquares = (1L << castleRookFrom(to)) | (1L << castleRookTo(to));
+			touched |= rookSquares;
+			changed |= rookSquares;
+		}
+		return beginAttackUpdate(touched, changed);
+	}
+
+	private long beginAttackUpdate(long touched, long changed) {
+		// called before the pieces on the touched squares change.  The pieces whose attacks can
+		// change are those on the touched squares plus the sliding pieces whose rays reach a
+		// square whose occupancy changes.  Their current attacks are subtracted from the counts
+		// and the set of their squares is returned for endAttackUpdate() to add them back.
+		long affected = touched;
+		long orthogonalSliders = 0L;
+		long diagonalSliders = 0L;
+		for (int c = 0; c < 2; c++) {
+			long queens = pieceBitboards[c][ChessPieceType.QUEEN.ordinal()];
+			orthogonalSliders |= queens | pieceBitboards[c][ChessPieceType.ROOK.ordinal()];
+			diagonalSliders |= queens | pieceBitboards[c][ChessPieceType.BISHOP.ordinal()];
+		}
+		// the sliders of both colors at once: a ray from the square finds whichever stands at its end
+		while (changed != 0L) {
+			int square = Long.numberOfTrailingZeros(changed);
+			changed &= changed - 1;
+			affected |= (ChessTables.rookAttacks(square, occupancy) & orthogonalSliders) |
+					(ChessTables.bishopAttacks(square, occupancy) & diagonalSliders);
+		}
+		updateAttackCounts(affected & occupancy, -1);
+		return affected;
+	}
+
+	private void endAttackUpdate(long affected) {
+		updateAttackCounts(affected & occupancy, 1);
+	}
+
+	private void updateAttackCounts(long pieceSquares, int delta) {
+		// add (delta 1) or subtract (delta -1) the attacks of the pieces on the given squares
+		while (pieceSquares != 0L) {
+			int square = Long.numberOfTrailingZeros(pieceSquares);
+			pieceSquares &= pieceSquares - 1;
+			ChessPiece piece = squares[square];
+			int c = piece.getColor().ordinal();
+			int[] counts = attackCounts[c];
+			long attacks = attacksFrom(square, piece.getType(), piece.getColor(), occupancy);
+			while (attacks != 0L) {
+				int target = Long.numberOfTrailingZeros(attacks);
+				attacks &= attacks - 1;
+				counts[target] += delta;
+				if (counts[target] == 0) {
+					attackedSquares[c] &= ~(1L << target);
+				}
+				else {
+					attackedSquares[c] |= 1L << target;
+				}
+			}
+		}
+	}
+
+	public int repetitions() {
+		// how often the current position occurred before, counting only positions since the
+		// last capture or Pawn move (earlier ones cannot recur) with the same side to move
+		int limit = Math.min(halfmoveClock, Math.min(historyLength, HISTORY_SIZE));
+		int count = 0;
+		// a position can come back 4 plies later at the earliest
+		for (int back = 4; back <= limit; back += 2) {
+			if (keyHistory[(historyLength - back) & HISTORY_MASK] == key) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	public boolean isRepetition() {
+		// has the current position occurred before (see repetitions)?  Stops at the first match
+		int limit = Math.min(halfmoveClock, Math.min(historyLength, HISTORY_SIZE));
+		for (int back = 4; back <= limit; back += 2) {
+			if (keyHistory[(historyLength - back) & HISTORY_MASK] == key) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	public boolean isFiftyMoveDraw() {
+		// fifty moves by each side without a capture or Pawn move
+		return halfmoveClock >= 100;
+	}
+
+	public boolean hasInsufficientMaterial() {
+		// neither side can ever mate: no Pawns, Rooks or Queens, and either at most one minor
+		// piece in all or only Bishops all standing on squares of one color
+		long heavy = 0L;
+		long knights = 0L;
+		long bishops = 0L;
+		for (int c = 0; c < 2; c++) {
+			heavy |= pieceBitboards[c][ChessPieceType.PAWN.ordinal()] | pieceBitboards[c][ChessPieceType.ROOK.ordinal()] |
+					pieceBitboards[c][ChessPieceType.QUEEN.ordinal()];
+			knights |= pieceBitboards[c][ChessPieceType.KNIGHT.ordinal()];
+			bishops |= pieceBitboards[c][ChessPieceType.BISHOP.ordinal()];
+		}
+		if (heavy != 0L) {
+			return false;
+		}
+		long minors = knights | bishops;
+		return (minors & (minors - 1)) == 0L ||
+				(knights == 0L && ((bishops & LIGHT_SQUARES) == 0L || (bishops & ~LIGHT_SQUARES) == 0L));
+	}
+
+	public boolean isDrawByRule() {
+		// a draw by threefold repetition, the fifty-move rule or insufficient material
+		return isFiftyMoveDraw() || hasInsufficientMaterial() || repetitions() >= 2;
+	}
+
+	public int getPly() {
+		return ply;
+	}
+
+	private void growUndoStack() {
+		// twice the room for undo records, keeping the ones already pushed
+		int capacity = undoMove.length * 2;
+		undoMove = Arrays.copyOf(undoMove, capacity);
+		undoMovedPiece = Arrays.copyOf(undoMovedPiece, capacity);
+		undoCapturedPiece = Arrays.copyOf(undoCapturedPiece, capacity);
+		undoCapturedIndex = Arrays.copyOf(undoCapturedIndex, capacity);
+		undoCastlingRights = Arrays.copyOf(undoCastlingRights, capacity);
+		undoEnPassantSquare = Arrays.copyOf(undoEnPassantSquare, capacity);
+		undoKey = Arrays.copyOf(undoKey, capacity);
+		undoHalfmoveClock = Arrays.copyOf(undoHalfmoveClock, capacity);
+	}
+
+	public void clearUndoHistory() {
+		// forget the undo records (used once a move is final, i.e. played in the game)
+		while (ply > 0) {
+			ply--;
+			undoMovedPiece[ply] = null;
+			undoCapturedPiece[ply] = null;
+		}
+	}
+
+	private static int castleRookFrom(int kingTo) {
+		return square((fileOf(kingTo) == 6 ? 7 : 0), rankOf(kingTo));
+	}
+
+	private static int castleRookTo(int kingTo) {
+		return square((fileOf(kingTo) == 6 ? 5 : 3), rankOf(kingTo));
+	}
+
+	public int kingSquare(ChessPieceColor color) {
+		return kingSquares[color.ordinal()];
+	}
+
+	public int pieceCount(ChessPieceColor color) {
+		return pieceCount[color.ordinal()];
+	}
+
+	public int pieceSquare(ChessPieceColor color, int index) {
+		// square of the index-th entry (0 .. pieceCount - 1) of the color's piece list
+		return pieceList[color.ordinal()][index];
+	}
+
+	public long attackersTo(int square, ChessPieceColor byColor, long occupied) {
+		// return the set of pieces of color byColor that attack the square, treating
+		// only the squares in occupied as blocking sliding pieces.
+		long[] bb = pieceBitboards[byColor.ordinal()];
+		// a WHITE pawn attacks diagonally upward, so it stands where a BLACK pawn on the square would attack (and vice versa)
+		long attackers = (ChessTables.KNIGHT_ATTACKS[square] & bb[ChessPieceType.KNIGHT.ordinal()]) |
+				(ChessTables.KING_ATTACKS[square] & bb[ChessPieceType.KING.ordinal()]) |
+				(ChessTables.PAWN_ATTACKS[1 - byColor.ordinal()][square] & bb[ChessPieceType.PAWN.ordinal()]);
+		long orthogonalSliders = bb[ChessPieceType.ROOK.ordinal()] | bb[ChessPieceType.QUEEN.ordinal()];
+		long diagonalSliders = bb[ChessPieceType.BISHOP.ordinal()] | bb[ChessPieceType.QUEEN.ordinal()];
+		if (orthogonalSliders != 0L) {
+			attackers |= ChessTables.rookAttacks(square, occupied) & orthogonalSliders;
+		}
+		if (diagonalSliders != 0L) {
+			attackers |= ChessTables.bishopAttacks(square, occupied) & diagonalSliders;
+		}
+		return attackers;
+	}
+
+	public boolean isSquareAttacked(int square, ChessPieceColor byColor) {
+		return (attackedSquares[byColor.ordinal()] & (1L << square)) != 0L;
+	}
+
+	public long attackedSquares(ChessPieceColor byColor) {
+		return attackedSquares[byColor.ordinal()];
+	}
+
+	int attackCount(int square, ChessPieceColor byColor) {
+		// how many pieces of byColor attack the square (the incrementally kept count)
+		return attackCounts[byColor.ordinal()][square];
+	}
+
+	public long attacksFrom(int square, ChessPieceType type, ChessPieceColor color, long occupied) {
+		// return the set of squares a piece of the given type and color standing on the square
+		// attacks (for a pawn these are its two capture squares).
+		switch (type) {
+		   case KNIGHT:
+			   return ChessTables.KNIGHT_ATTACKS[square];
+		   case KING:
+			   return ChessTables.KING_ATTACKS[square];
+		   case PAWN:
+			   return ChessTables.PAWN_ATTACKS[color.ordinal()][square];
+		   case ROOK:
+			   return ChessTables.rookAttacks(square, occupied);
+		   case BISHOP:
+			   return ChessTables.bishopAttacks(square, occupied);
+		   default:
+			   return ChessTables.rookAttacks(square, occupied) | ChessTables.bishopAttacks(square, occupied);
+		}
+	}
+
+	public static ChessPosition fromBoardMap(Map<Point, ChessPiece> board) {
+		// build a position from the Map representation of the board
+		ChessPosition position = new ChessPosition();
+		for (Map.Entry<Point, ChessPiece> mapEntry : board.entrySet()) {
+			int square = squareOf(mapEntry.getKey());
+			if (square != NO_SQUARE && mapEntry.getValue() != null) {
+				position.putPiece(square, mapEntry.getValue());
+			}
+		}
+		return position;
+	}
+
+	public Map<Point, ChessPiece> toBoardMap() {
+		// Map representation of the board (used for display)
+		Map<Point, ChessPiece> board = new HashMap<Point, ChessPiece>();
+		long remaining = occupancy;
+		while (remaining != 0L) {
+			int square = Long.numberOfTrailingZeros(remaining);
+			remaining &= remaining - 1;
+			board.put(toPoint(square), squares[square]);
+		}
+		return board;
+	}
+
+}
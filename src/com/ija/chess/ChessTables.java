@@ -0,0 +1,106 @@
+package com.ija.chess;
+
+// this is a utility class of board geometry tables, computed once when the class
+// is loaded, so that move rules become lookups instead of coordinate arithmetic:
+//   KING_ATTACKS / KNIGHT_ATTACKS[square]      squares the piece on square attacks
+//   PAWN_ATTACKS[color ordinal][square]        the capture squares of a Pawn
+//   RAYS[direction][square]                    squares from square to the board edge
+//   BETWEEN[square][square]                    squares strictly between two squares on
+//                                              a common rank, file or diagonal (else 0)
+//   LINE[square][square]                       what joins two squares: NO_LINE,
+//                                              ORTHOGONAL or DIAGONAL
+// Sliding attacks are a ray lookup per direction cut off at the first blocker.
+// Squares are indexed y * 8 + x as in ChessPosition.
+
+public final class ChessTables {
+
+	public static final int NO_LINE = 0;
+	public static final int ORTHOGONAL = 1;
+	public static final int DIAGONAL = 2;
+
+	// directions: the first four raise the square index, the last four lower it
+	private static final int[] DIRECTION_DX = {1, 0, 1, -1, -1, 0, -1, 1};
+	private static final int[] DIRECTION_DY = {0, 1, 1, 1, 0, -1, -1, -1};
+	private static final int FIRST_NEGATIVE_DIRECTION = 4;
+
+	static final long[] KING_ATTACKS = new long[64];
+	static final long[] KNIGHT_ATTACKS = new long[64];
+	static final long[][] PAWN_ATTACKS = new long[2][64];
+	static final long[][] RAYS = new long[8][64];
+	static final long[][] BETWEEN = new long[64][64];
+	static final byte[][] LINE = new byte[64][64];
+
+	static {
+		int[] knightDx = {1, 2, 2, 1, -1, -2, -2, -1};
+		int[] knightDy = {2, 1, -1, -2, -2, -1, 1, 2};
+		for (int square = 0; square < 64; square++) {
+			int x = ChessPosition.fileOf(square);
+			int y = ChessPosition.rankOf(square);
+			for (int direction = 0; direction < 8; direction++) {
+				int dx = DIRECTION_DX[direction];
+				int dy = DIRECTION_DY[direction];
+				if (ChessPosition.onBoard(x + dx, y + dy)) {
+					KING_ATTACKS[square] |= 1L << ChessPosition.square(x + dx, y + dy);
+				}
+				long between = 0L;
+				for (int length = 1; ChessPosition.onBoard(x + dx * length, y + dy * length); length++) {
+					int target = ChessPosition.square(x + dx * length, y + dy * length);
+					RAYS[direction][square] |= 1L << target;
+					BETWEEN[square][target] = between;
+					LINE[square][target] = (byte) ((dx == 0 || dy == 0) ? ORTHOGONAL : DIAGONAL);
+					between |= 1L << target;
+				}
+			}
+			for (int i = 0; i < 8; i++) {
+				if (ChessPosition.onBoard(x + knightDx[i], y + knightDy[i])) {
+					KNIGHT_ATTACKS[square] |= 1L << ChessPosition.square(x + knightDx[i], y + knightDy[i]);
+				}
+			}
+			for (int dx = -1; dx <= 1; dx += 2) {
+				if (ChessPosition.onBoard(x + dx, y + 1)) {
+					PAWN_ATTACKS[ChessPieceColor.WHITE.ordinal()][square] |= 1L << ChessPosition.square(x + dx, y + 1);
+				}
+				if (ChessPosition.onBoard(x + dx, y - 1)) {
+					PAWN_ATTACKS[ChessPieceColor.BLACK.ordinal()][square] |= 1L << ChessPosition.square(x + dx, y - 1);
+				}
+			}
+		}
+	}
+
+	private ChessTables() {
+	}
+
+	public static long rookAttacks(int square, long occupied) {
+		// squares a Rook on square attacks along ranks and files, up to and including the first occupied square
+		return rayAttacks(0, square, occupied) | rayAttacks(1, square, occupied) |
+				rayAttacks(4, square, occupied) | rayAttacks(5, square, occupied);
+	}
+
+	public static long bishopAttacks(int square, long occupied) {
+		// squares a Bishop on square attacks along diagonals, up to and including the first occupied square
+		return rayAttacks(2, square, occupied) | rayAttacks(3, square, occupied) |
+				rayAttacks(6, square, occupied) | rayAttacks(7, square, occupied);
+	}
+
+	private static long rayAttacks(int direction, int square, long occupied) {
+		// the ray in one direction, cut off behind its first occupied square
+		long ray = RAYS[direction][square];
+		long blockers = ray & occupied;
+		if (blockers == 0L) {
+			return ray;
+		}
+		int blocker = (direction < FIRST_NEGATIVE_DIRECTION) ? Long.numberOfTrailingZeros(blockers) :
+			63 - Long.numberOfLeadingZeros(blockers);
+		return ray & ~RAYS[direction][blocker];
+	}
+
+	public static int line(int from, int to) {
+		// NO_LINE, ORTHOGONAL (same rank or file) or DIAGONAL
+		return LINE[from][to];
+	}
+
+	public static long between(int from, int to) {
+		return BETWEEN[from][to];
+	}
+
+}
@@ -13,6 +13,8 @@ public final class ChessUtil {
 	public static int begBound = 0;
 	public static int endBound = 7;
 	
+	private static final BoardRenderer boardRenderer = new BoardRenderer();
+	
 	public static String longFormatChessPiece(ChessPiece piece) {
 		//long name for chesspiece Color & PieceType
 		String retVal = null;
@@ -37,6 +39,12 @@ public final class ChessUtil {
 		return retVal;
 	}
 	
+	public static char pieceLetter(ChessPiece piece) {
+		// the FEN letter of a piece: K Q R B N P for White, lower case for Black
+		char letter = piece.getType().equals(ChessPieceType.KNIGHT) ? 'N' : piece.getType().toString().charAt(0);
+		return piece.getColor().equals(ChessPieceColor.WHITE) ? letter : Character.toLowerCase(letter);
+	}
+	
 	public static Point parseInputCoord(String inputCoord) {
 		// ensure that user inputed coordinates on chess board are in 
 		// for x,y.  Anything else leads to an error.
@@ -53,6 +61,8 @@ public final class ChessUtil {
 			if (!err) {
 			  try {	
 				yCoord = Integer.parseInt(inputCoord.substring(2));
+			  } catch (NumberFormatException ex) {
+				  err = true;
 			  } finally {	}
 		    }
 			if (xCoord >=0 && yCoord >= 0) {
@@ -62,6 +72,53 @@ public final class ChessUtil {
 		return retVal;
 	}
 	
+	public static Point[] parseInputMove(String inputMove) {
+		// a whole move as one item, x,y-x,y (the form moves are printed in) or x,y x,y:
+		// the FROM and TO points, or null for anything else.
+		Point[] retVal = null;
+		if (inputMove != null) {
+			Point current = new Point();
+			Point target = new Point();
+			if (readMove(inputMove, 0, current, target) == inputMove.length()) {
+				retVal = new Point[] {current, target};
+			}
+		}
+		return retVal;
+	}
+	
+	public static int readMove(String text, int pos, Point current, Point target) {
+		// read the move starting at pos in text, x,y-x,y or x,y x,y with both points on the board,
+		// into current and target (no allocation, for scripts of many moves).  Returns the position
+		// after the move, or -1 if there is no move at pos.
+		pos = readCoord(text, pos, current);
+		if (pos >= 0 && pos < text.length() && text.charAt(pos) == '-') {
+			return readCoord(text, pos + 1, target);
+		}
+		return (pos < 0) ? -1 : readCoord(text, skipSpace(text, pos), target);
+	}
+	
+	public static int skipSpace(String text, int pos) {
+		// the position of the first character at or after pos that is not white space
+		while (pos < text.length() && Character.isWhitespace(text.charAt(pos))) {
+			pos++;
+		}
+		return pos;
+	}
+	
+	private static int readCoord(String text, int pos, Point point) {
+		// read "x,y" with both digits on the board into point; returns the position after it or -1
+		if (pos < 0 || pos + 3 > text.length() || text.charAt(pos + 1) != ',') {
+			return -1;
+		}
+		int x = text.charAt(pos) - '0';
+		int y = text.charAt(pos + 2) - '0';
+		if (x < begBound || x > endBound || y < begBound || y > endBound) {
+			return -1;
+		}
+		point.setLocation(x, y);
+		return pos + 3;
+	}
+	
 	public static String formatPoint(Point point) {
 		//format a point for use readability. In form x,y
 		String retVal = null;
@@ -71,6 +128,11 @@ public final class ChessUtil {
 		return retVal;		
 	}
 	
+	public static String formatSquare(int square) {
+		//format a bitboard square index for use readability. In form x,y
+		return ChessPosition.fileOf(square) + "," + ChessPosition.rankOf(square);
+	}
+	
 	public static void showCapturedPieces(Map<ChessPiece,Point> capturedPiecesMap) {
 		//display list of captured pieces by color
 		StringBuilder whiteCaptured = new StringBuilder("");
@@ -103,40 +165,19 @@ public final class ChessUtil {
 		System.out.println("");
 	}
 	
+	public static BoardRenderer getBoardRenderer() {
+		// the renderer used by showBoard (e.g. to switch it to ANSI mode)
+		return boardRenderer;
+	}
+	
 	public static void showBoard(Map<Point, ChessPiece> board) {
 		// displays the current state of the chess board after latest moves
-		System.out.println("CURRENT CHESS BOARD");
-		System.out.println("+++++++++++++++++++");
-		System.out.println("");
-		System.out.println("");
-		StringBuilder boardRow = new StringBuilder("  ");
-		for (int i = begBound; i <= endBound; i++) {
-			boardRow.append(" " + i + " |");
-		}
-		System.out.println(boardRow.toString());
-		System.out.println("##################################");
-		for (int j = endBound; j >= begBound; j--) {
-			boardRow = new StringBuilder("");
-			boardRow.append(j + "#");
-			for (int i = begBound; i <= endBound; i++) {
-				ChessPiece piece = board.get(new Point(i,j));
-				if (piece != null) {
-					boardRow.append(shortFormatChessPiece(piece) + "|");
-				}
-				else {
-					boardRow.append("   |");
-				}
-			}
-			boardRow.append(j);
-			System.out.println(boardRow.toString());			
-		} 
-		System.out.println("##################################");
-		boardRow = new StringBuilder(" #");
-		for (int i = begBound; i <= endBound; i++) {
-			boardRow.append(" " + i + " |");
-		}
-		System.out.println(boardRow.toString());
-		System.out.println("");		
+		boardRenderer.render(board);
+	}
+	
+	public static void showBoard(ChessPosition position) {
+		// displays the current state of the chess board after latest moves
+		boardRenderer.render(position);
 	}
 	
 	public static Map<Point, ChessPiece> initBoard() {
@@ -0,0 +1,121 @@
+package com.ija.chess;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayDeque;
+
+// the interactive game's input: white space separated tokens read from a channel
+// through one reusable byte buffer (no regular expressions).  A whole input line is
+// split at once and its tokens are queued, so a client can answer several prompts -
+// e.g. a list of moves "4,1-4,3 4,6-4,4" - in one write, and the game takes them
+// in order without waiting for more input.  Input is ASCII; the end of the input
+// (or a read error) makes next() return null.
+
+public class ConsoleInput {
+
+	private static final int BUFFER_SIZE = 1 << 13;
+
+	private final ReadableByteChannel channel;
+	private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+	private final StringBuilder token = new StringBuilder(16);
+	private final ArrayDeque<String> queued = new ArrayDeque<String>();
+	private boolean endOfInput = false;
+
+	public ConsoleInput(InputStream in) {
+		this(Channels.newChannel(in));
+	}
+
+	public ConsoleInput(ReadableByteChannel channel) {
+		this.channel = channel;
+		this.buffer.flip();
+	}
+
+	public String next() {
+		// the next token, reading another line when the queue is empty; null at the end of the input
+		while (queued.isEmpty()) {
+			if (!readLine()) {
+				return null;
+			}
+		}
+		return queued.poll();
+	}
+
+	public boolean hasQueued() {
+		// true when tokens of a line already read are waiting
+		return !queued.isEmpty();
+	}
+
+	public void pushBack(String text) {
+		// makes text the next token again
+		queued.addFirst(text);
+	}
+
+	public int discardQueued() {
+		// drops the rest of the current line (e.g. the moves after an illegal one) and returns how many tokens that was
+		int discarded = queued.size();
+		queued.clear();
+		return discarded;
+	}
+
+	public void close() {
+		try {
+			channel.close();
+		} catch (IOException ex) {
+			// nothing more will be read either way
+		}
+	}
+
+	private boolean readLine() {
+		// queues the tokens of the next line; false when the input has ended
+		boolean read = false;
+		while (true) {
+			if (!buffer.hasRemaining() && !fill()) {
+				endToken();
+				return read;
+			}
+			byte b = buffer.get();
+			read = true;
+			if (b == '\n') {
+				endToken();
+				return true;
+			}
+			if (b <= ' ') {
+				endToken();
+			}
+			else {
+				token.append((char) (b & 0xFF));
+			}
+		}
+	}
+
+	private void endToken() {
+		if (token.length() > 0) {
+			queued.add(token.toString());
+			token.setLength(0);
+		}
+	}
+
+	private boolean fill() {
+		// one read takes everything the other side has written so far (up to the buffer size)
+		if (endOfInput) {
+			return false;
+		}
+		buffer.clear();
+		int count;
+		try {
+			count = channel.read(buffer);
+		} catch (IOException ex) {
+			count = -1;
+		}
+		buffer.flip();
+		if (count < 0) {
+			endOfInput = true;
+			return false;
+		}
+		return true;
+	}
+
+}
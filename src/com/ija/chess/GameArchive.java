@@ -0,0 +1,125 @@
+package com.ija.chess;
+
+// binary archive of played games (written by GameArchiveWriter, read back by
+// GameArchiveReader).  Layout:
+//   file header   "CHGA", version (short), reserved (short)
+//   game block    payload length (int) followed by the payload, so blocks can be
+//                 appended to an existing archive and skipped without decoding
+//   payload       flags (byte; HAS_FEN if the game did not start from the initial
+//                 position), the FEN (short length + ASCII) if present, result (byte),
+//                 number of moves (int), then the moves
+// A move is normally one byte: its index among the target squares of the side to
+// move, counted piece by piece in square order.  A piece's targets are looked up in
+// the attack tables without asking whether its King would be left in check (Pawns:
+// the squares ahead when empty and captures; the King: its steps and the castling
+// squares while the right remains), so neither writing nor reading generates legal
+// moves and an archive does not depend on how the move generator works.  A move
+// outside those targets, or with an index of ESCAPE or more, is written as ESCAPE
+// followed by its 16-bit from/to/promotion code.  Promotions are always to a Queen.
+
+public final class GameArchive {
+
+	public static final byte[] MAGIC = {'C', 'H', 'G', 'A'};
+	// version 2: moves are indexed among the pieces' targets, no longer among the legal moves
+	public static final short VERSION = 2;
+	public static final int HEADER_SIZE = 8;
+
+	public static final int HAS_FEN = 1;
+	public static final int ESCAPE = 0xFF;
+
+	// results
+	public static final int UNFINISHED = 0;
+	public static final int WHITE_WINS = 1;
+	public static final int BLACK_WINS = 2;
+	public static final int DRAW = 3;
+
+	// from, to and promotion bits of a MoveCode: what identifies a move in a position
+	static final int MOVE_KEY_MASK = 0x7FFF;
+
+	static int moveIndex(ChessPosition position, int move) {
+		// index of the move among the targets of the side to move (see above), or -1 if it is not one of them
+		int from = MoveCode.from(move);
+		long toBit = 1L << MoveCode.to(move);
+		ChessPieceColor color = position.getSideToMove();
+		long own = position.occupancy(color);
+		if ((own & (1L << from)) == 0L) {
+			return -1;
+		}
+		long enemy = position.occupancy(color.equals(ChessPieceColor.WHITE) ? ChessPieceColor.BLACK : ChessPieceColor.WHITE);
+		long targets = targets(position, from, color, own, enemy);
+		if ((targets & toBit) == 0L) {
+			return -1;
+		}
+		int index = Long.bitCount(targets & (toBit - 1));
+		long before = own & ((1L << from) - 1);
+		while (before != 0L) {
+			int square = Long.numberOfTrailingZeros(before);
+			before &= before - 1;
+			index += Long.bitCount(targets(position, square, color, own, enemy));
+		}
+		return index;
+	}
+
+	static int moveAt(ChessPosition position, ChessMove mover, int index) {
+		// the move with the given index among the targets of the side to move (ChessEngine.NO_MOVE if out of range)
+		ChessPieceColor color = position.getSideToMove();
+		long own = position.occupancy(color);
+		long enemy = position.occupancy(color.equals(ChessPieceColor.WHITE) ? ChessPieceColor.BLACK : ChessPieceColor.WHITE);
+		for (long pieces = own; pieces != 0L; pieces &= pieces - 1) {
+			int from = Long.numberOfTrailingZeros(pieces);
+			long targets = targets(position, from, color, own, enemy);
+			int count = Long.bitCount(targets);
+			if (index < count) {
+				for (; index > 0; index--) {
+					targets &= targets - 1;
+				}
+				return mover.moveFor(from, Long.numberOfTrailingZeros(targets));
+			}
+			index -= count;
+		}
+		return ChessEngine.NO_MOVE;
+	}
+
+	private static long targets(ChessPosition position, int from, ChessPieceColor color, long own, long enemy) {
+		// the squares the piece of color on from may move to by the piece's own rules, checks aside
+		boolean white = color.equals(ChessPieceColor.WHITE);
+		long occupied = own | enemy;
+		switch (position.pieceAt(from).getType()) {
+		case PAWN: {
+			long targets = ChessTables.PAWN_ATTACKS[color.ordinal()][from] & enemy;
+			int oneStep = from + (white ? 8 : -8);
+			if (oneStep >= 0 && oneStep < 64 && (occupied & (1L << oneStep)) == 0L) {
+				targets |= 1L << oneStep;
+				int twoStep = oneStep + (white ? 8 : -8);
+				if (ChessPosition.rankOf(from) == (white ? 1 : 6) && (occupied & (1L << twoStep)) == 0L) {
+					targets |= 1L << twoStep;
+				}
+			}
+			return targets;
+		}
+		case KING: {
+			long targets = ChessTables.KING_ATTACKS[from] & ~own;
+			int rights = position.getCastlingRights();
+			if ((rights & (white ? ChessPosition.WHITE_CASTLE_RIGHT_ROOK : ChessPosition.BLACK_CASTLE_RIGHT_ROOK)) != 0) {
+				targets |= 1L << (from + 2);
+			}
+			if ((rights & (white ? ChessPosition.WHITE_CASTLE_LEFT_ROOK : ChessPosition.BLACK_CASTLE_LEFT_ROOK)) != 0) {
+				targets |= 1L << (from - 2);
+			}
+			return targets;
+		}
+		default:
+			return position.attacksFrom(from, position.pieceAt(from).getType(), color, occupied) & ~own;
+		}
+	}
+
+	static String resultText(int result) {
+		switch (result) {
+		case WHITE_WINS: return "1-0";
+		case BLACK_WINS: return "0-1";
+		case DRAW: return "1/2-1/2";
+		default: return "*";
+		}
+	}
+
+}
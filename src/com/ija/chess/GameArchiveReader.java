@@ -0,0 +1,145 @@
+package com.ija.chess;
+
+import java.awt.Point;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+
+// reads a GameArchive file game by game, replaying each game's moves on a position:
+//   while (reader.nextGame()) {
+//       while (reader.nextMove() != ChessEngine.NO_MOVE) { ... reader.getPosition() ... }
+//   }
+// A block is read whole into a reusable buffer; the position is only changed by moves.
+
+public class GameArchiveReader {
+
+	private final DataInputStream in;
+	private final ChessPosition initialPosition = ChessFen.parse(ChessFen.INITIAL_POSITION);
+	private byte[] block = new byte[1024];
+	private int blockLength = 0;
+	private int cursor = 0;
+	private ChessPosition position;
+	private ChessMove mover;
+	private String startFen;
+	private int result;
+	private int moveCount;
+	private int movesRead;
+
+	public GameArchiveReader(File file) throws IOException {
+		this.in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16));
+		byte[] magic = new byte[GameArchive.MAGIC.length];
+		try {
+			in.readFully(magic);
+			if (!Arrays.equals(magic, GameArchive.MAGIC) || in.readShort() != GameArchive.VERSION) {
+				throw new IOException(file + " is not a version " + GameArchive.VERSION + " game archive");
+			}
+			in.readShort();
+		} catch (EOFException ex) {
+			in.close();
+			throw new IOException(file + " is not a game archive");
+		}
+	}
+
+	public boolean nextGame() throws IOException {
+		// read the next game block and set the position to the game's start (false at the end of the archive)
+		int length;
+		try {
+			length = in.readInt();
+		} catch (EOFException ex) {
+			return false;
+		}
+		if (length < 6) {
+			throw new IOException("corrupt game block of " + length + " bytes");
+		}
+		if (length > block.length) {
+			block = new byte[Math.max(length, block.length * 2)];
+		}
+		in.readFully(block, 0, length);
+		blockLength = length;
+		cursor = 0;
+		int flags = block[cursor++];
+		startFen = null;
+		if ((flags & GameArchive.HAS_FEN) != 0) {
+			int fenLength = readShort();
+			startFen = new String(block, cursor, fenLength, "US-ASCII");
+			cursor += fenLength;
+		}
+		result = block[cursor++];
+		moveCount = (readShort() << 16) | readShort();
+		movesRead = 0;
+		try {
+			position = (startFen == null) ? initialPosition.duplicate() : ChessFen.parse(startFen);
+		} catch (IllegalArgumentException ex) {
+			throw new IOException("corrupt game block: " + ex.getMessage());
+		}
+		mover = new ChessMove(position, new HashMap<ChessPiece, Point>(), position.getSideToMove());
+		return true;
+	}
+
+	public int nextMove() throws IOException {
+		// play the game's next move on the position and return it (ChessEngine.NO_MOVE after the last move)
+		if (movesRead >= moveCount) {
+			return ChessEngine.NO_MOVE;
+		}
+		if (cursor >= blockLength) {
+			throw new IOException("corrupt game block: moves missing");
+		}
+		int move;
+		int code = block[cursor++] & 0xFF;
+		if (code == GameArchive.ESCAPE) {
+			int key = readShort();
+			int from = key & 0x3F;
+			int to = (key >>> 6) & 0x3F;
+			if (position.pieceAt(from) == null) {
+				throw new IOException("corrupt game block: no piece to move at " + ChessUtil.formatSquare(from));
+			}
+			move = mover.moveFor(from, to);
+		}
+		else {
+			move = GameArchive.moveAt(position, mover, code);
+			if (move == ChessEngine.NO_MOVE) {
+				throw new IOException("corrupt game block: move index " + code + " out of range");
+			}
+		}
+		position.makeMove(move);
+		position.clearUndoHistory();
+		movesRead++;
+		return move;
+	}
+
+	public ChessPosition getPosition() {
+		return position;
+	}
+
+	public String getStartFen() {
+		// FEN of the game's start position (the initial position if the game has none of its own)
+		return (startFen == null) ? ChessFen.INITIAL_POSITION : startFen;
+	}
+
+	public int getResult() {
+		return result;
+	}
+
+	public int getMoveCount() {
+		return moveCount;
+	}
+
+	public void close() throws IOException {
+		in.close();
+	}
+
+	private int readShort() throws IOException {
+		if (cursor + 2 > blockLength) {
+			throw new IOException("corrupt game block: truncated");
+		}
+		int value = ((block[cursor] & 0xFF) << 8) | (block[cursor + 1] & 0xFF);
+		cursor += 2;
+		return value;
+	}
+
+}
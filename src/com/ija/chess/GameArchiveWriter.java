@@ -0,0 +1,120 @@
+package com.ija.chess;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+
+// appends games to a GameArchive file.  A game is recorded move by move
+// (beginGame, recordMove..., endGame); the writer replays the moves on its own copy of
+// the game's position to find each move's index (see GameArchive), and the finished game is
+// written as one block.  A new file gets the archive header; an existing one is checked
+// and appended to.
+
+public class GameArchiveWriter {
+
+	private final DataOutputStream out;
+	private ChessPosition position;
+	private String startFen;
+	private byte[] moveBytes = new byte[256];
+	private int moveBytesLength = 0;
+	private int moveCount = 0;
+	private long gamesWritten = 0;
+
+	public GameArchiveWriter(File file) throws IOException {
+		boolean newFile = !file.exists() || file.length() == 0;
+		if (!newFile) {
+			checkHeader(file);
+		}
+		this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true), 1 << 16));
+		if (newFile) {
+			out.write(GameArchive.MAGIC);
+			out.writeShort(GameArchive.VERSION);
+			out.writeShort(0);
+		}
+	}
+
+	private static void checkHeader(File file) throws IOException {
+		RandomAccessFile existing = new RandomAccessFile(file, "r");
+		try {
+			byte[] magic = new byte[GameArchive.MAGIC.length];
+			existing.readFully(magic);
+			if (!Arrays.equals(magic, GameArchive.MAGIC) || existing.readShort() != GameArchive.VERSION) {
+				throw new IOException(file + " is not a version " + GameArchive.VERSION + " game archive");
+			}
+		} finally {
+			existing.close();
+		}
+	}
+
+	public long getGamesWritten() {
+		return gamesWritten;
+	}
+
+	public void beginGame(String fen) {
+		// start recording a game from the FEN position (null for the initial position)
+		startFen = (fen == null || fen.equals(ChessFen.INITIAL_POSITION)) ? null : fen;
+		position = ChessFen.parse(fen == null ? ChessFen.INITIAL_POSITION : fen);
+		moveBytesLength = 0;
+		moveCount = 0;
+	}
+
+	public void recordMove(int move) {
+		// add the next move of the game (a MoveCode as played on the game's position)
+		if (position == null) {
+			throw new IllegalStateException("recordMove before beginGame");
+		}
+		ensureMoveBytes(3);
+		int index = GameArchive.moveIndex(position, move);
+		if (index >= 0 && index < GameArchive.ESCAPE) {
+			moveBytes[moveBytesLength++] = (byte) index;
+		}
+		else {
+			int key = move & GameArchive.MOVE_KEY_MASK;
+			moveBytes[moveBytesLength++] = (byte) GameArchive.ESCAPE;
+			moveBytes[moveBytesLength++] = (byte) (key >>> 8);
+			moveBytes[moveBytesLength++] = (byte) key;
+		}
+		position.makeMove(move);
+		position.clearUndoHistory();
+		moveCount++;
+	}
+
+	public void endGame(int result) throws IOException {
+		// write the recorded game as one block
+		if (position == null) {
+			return;
+		}
+		byte[] fenBytes = (startFen == null) ? null : startFen.getBytes("US-ASCII");
+		int payloadLength = 1 + ((fenBytes == null) ? 0 : 2 + fenBytes.length) + 1 + 4 + moveBytesLength;
+		out.writeInt(payloadLength);
+		out.writeByte((fenBytes == null) ? 0 : GameArchive.HAS_FEN);
+		if (fenBytes != null) {
+			out.writeShort(fenBytes.length);
+			out.write(fenBytes);
+		}
+		out.writeByte(result);
+		out.writeInt(moveCount);
+		out.write(moveBytes, 0, moveBytesLength);
+		position = null;
+		gamesWritten++;
+	}
+
+	public void flush() throws IOException {
+		out.flush();
+	}
+
+	public void close() throws IOException {
+		out.close();
+	}
+
+	private void ensureMoveBytes(int extra) {
+		if (moveBytesLength + extra > moveBytes.length) {
+			moveBytes = Arrays.copyOf(moveBytes, moveBytes.length * 2);
+		}
+	}
+
+}
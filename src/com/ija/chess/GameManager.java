@@ -0,0 +1,181 @@
+package com.ija.chess;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.lang.reflect.Method;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// hosts many independent games (GameSession) in one JVM.  Commands arrive as lines
+// multiplexed on one input stream:
+//   <game id> new                      start a game (or restart it)
+//   <game id> move x,y x,y | x,y-x,y   play a move for the side to move
+//   <game id> moves                    list the legal moves
+//   <game id> board                    show the board
+//   <game id> close                    end the game and forget it
+//   stats                              show the ChessMetrics report (lines starting "stats")
+//   quit                               stop reading commands
+// and every response is one line starting with the game id.  Each game has a mailbox
+// of pending commands that is drained by one task at a time, so games run concurrently
+// with each other while the commands of one game run in order.  Tasks run on virtual
+// threads where the JVM has them (Java 21+), otherwise on a pool with one thread per core.
+
+public class GameManager {
+
+	private final ConcurrentHashMap<String, Mailbox> sessions = new ConcurrentHashMap<String, Mailbox>();
+	private final ExecutorService executor;
+	private final PrintStream out;
+
+	public GameManager(PrintStream out) {
+		this(out, defaultExecutor());
+	}
+
+	public GameManager(PrintStream out, ExecutorService executor) {
+		this.out = out;
+		this.executor = executor;
+	}
+
+	private static ExecutorService defaultExecutor() {
+		try {
+			Method virtualThreadExecutor = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return (ExecutorService) virtualThreadExecutor.invoke(null);
+		} catch (ReflectiveOperationException ex) {
+			return Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), new ThreadFactory() {
+				public Thread newThread(Runnable task) {
+					Thread thread = new Thread(task, "chess-game-worker");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+	}
+
+	public int sessionCount() {
+		return sessions.size();
+	}
+
+	public void submit(String line) {
+		// route one protocol line to its game's mailbox
+		String[] tokens = line.trim().split("\\s+");
+		if (tokens.length < 2) {
+			if (tokens[0].length() > 0) {
+				respond(tokens[0], "error missing command");
+			}
+			return;
+		}
+		String id = tokens[0];
+		Mailbox mailbox = sessions.get(id);
+		if (mailbox == null) {
+			if (!tokens[1].equals("new")) {
+				respond(id, "error no such game");
+				return;
+			}
+			Mailbox created = new Mailbox(new GameSession(id));
+			mailbox = sessions.putIfAbsent(id, created);
+			if (mailbox == null) {
+				mailbox = created;
+			}
+		} else if (tokens[1].equals("close")) {
+			// forget the game now so later lines for it are refused; its queued commands still run
+			sessions.remove(id, mailbox);
+		}
+		mailbox.enqueue(tokens);
+	}
+
+	public void runProtocol(InputStream in) throws IOException {
+		// read command lines until end of input or "quit", then wait for all games to finish their commands
+		BufferedReader reader = new BufferedReader(new InputStreamReader(in));
+		String line;
+		while ((line = reader.readLine()) != null) {
+			if (line.trim().equals("quit")) {
+				break;
+			}
+			if (line.trim().equals("stats")) {
+				respondStats();
+				continue;
+			}
+			submit(line);
+		}
+		shutdown();
+	}
+
+	public void shutdown() {
+		executor.shutdown();
+		try {
+			executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		}
+		out.flush();
+	}
+
+	private void respondStats() {
+		for (String statsLine : ChessMetrics.get().getReport().split(System.lineSeparator())) {
+			respond("stats", statsLine);
+		}
+		out.flush();
+	}
+
+	private void respond(String id, String response) {
+		out.println(id + " " + response);
+	}
+
+	private class Mailbox implements Runnable {
+		// pending commands of one game and whether a task is (or is about to be) draining them
+		private final GameSession session;
+		private final ConcurrentLinkedQueue<String[]> pending = new ConcurrentLinkedQueue<String[]>();
+		private final AtomicBoolean scheduled = new AtomicBoolean(false);
+
+		Mailbox(GameSession session) {
+			this.session = session;
+		}
+
+		void enqueue(String[] tokens) {
+			pending.add(tokens);
+			if (scheduled.compareAndSet(false, true)) {
+				executor.execute(this);
+			}
+		}
+
+		public void run() {
+			while (true) {
+				String[] tokens;
+				while ((tokens = pending.poll()) != null) {
+					handle(tokens);
+				}
+				out.flush();
+				scheduled.set(false);
+				// a command queued after the last poll but before the flag was cleared would otherwise be stranded
+				if (pending.isEmpty() || !scheduled.compareAndSet(false, true)) {
+					return;
+				}
+			}
+		}
+
+		private void handle(String[] tokens) {
+			String command = tokens[1];
+			if (command.equals("close")) {
+				respond(session.getId(), "ok closed");
+				return;
+			}
+			String[] args = new String[tokens.length - 2];
+			System.arraycopy(tokens, 2, args, 0, args.length);
+			String response;
+			try {
+				response = session.handle(command, args);
+			} catch (RuntimeException ex) {
+				response = "error " + ex;
+			}
+			respond(session.getId(), response);
+		}
+	}
+
+}
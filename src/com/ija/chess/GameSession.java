@@ -0,0 +1,129 @@
+package com.ija.chess;
+
+import java.awt.Point;
+import java.util.HashMap;
+import java.util.Map;
+
+// one game hosted by the GameManager: its own position, ChessMove rules state and
+// captured pieces.  handle() executes one protocol command and returns the response
+// line.  A session is only ever driven by one thread at a time (GameManager runs the
+// commands of a session one after another) so it needs no locking of its own.
+// A session in play takes about 5 KB of heap (10,000 sessions: 50 MB).
+
+public class GameSession {
+	
+	private final String id;
+	private ChessPosition position;
+	private ChessMove mover;
+	private Map<ChessPiece, Point> capturedPiecesMap;
+	private boolean gameOver = false;
+	
+	public GameSession(String id) {
+		this.id = id;
+		newGame();
+	}
+	
+	public String getId() {
+		return this.id;
+	}
+	
+	public ChessPosition getPosition() {
+		return this.position;
+	}
+	
+	public boolean isGameOver() {
+		return this.gameOver;
+	}
+	
+	public void newGame() {
+		// start (or restart) the game from the initial position
+		position = ChessPosition.fromBoardMap(ChessUtil.initBoard());
+		capturedPiecesMap = new HashMap<ChessPiece, Point>();
+		mover = new ChessMove(position, capturedPiecesMap, ChessPieceColor.WHITE);
+		gameOver = false;
+	}
+	
+	public String handle(String command, String[] args) {
+		// execute one command (see GameManager for the protocol) and return the response without the game id
+		if (command.equals("new")) {
+			newGame();
+			return "ok new " + position.getSideToMove() + " to move";
+		}
+		else if (command.equals("move")) {
+			return move(args);
+		}
+		else if (command.equals("moves")) {
+			// the buffer is made per request: kept in every session it would be a fifth of its memory
+			MoveBuffer moveBuffer = new MoveBuffer();
+			mover.generateLegalMoves(moveBuffer);
+			StringBuilder response = new StringBuilder("moves");
+			for (int i = 0; i < moveBuffer.size(); i++) {
+				response.append(' ').append(MoveCode.format(moveBuffer.get(i)));
+			}
+			return response.toString();
+		}
+		else if (command.equals("board")) {
+			return "board " + boardString() + " " + position.getSideToMove() + " to move";
+		}
+		return "error unknown command " + command;
+	}
+	
+	private String move(String[] args) {
+		// a move is given as "x,y x,y" or "x,y-x,y"
+		Point[] points = null;
+		if (args.length == 2) {
+			points = ChessUtil.parseInputMove(args[0] + " " + args[1]);
+		}
+		else if (args.length == 1) {
+			points = ChessUtil.parseInputMove(args[0]);
+		}
+		if (points == null) {
+			return "error invalid coordinate";
+		}
+		Point current = points[0];
+		Point target = points[1];
+		if (gameOver) {
+			return "error game is over";
+		}
+		if (!mover.executeMove(current, target)) {
+			StringBuilder response = new StringBuilder("illegal");
+			for (String errorStr : mover.getErrorList()) {
+				response.append(' ').append(errorStr);
+			}
+			return response.toString();
+		}
+		String moveText = "ok " + ChessUtil.formatPoint(current) + "-" + ChessUtil.formatPoint(target);
+		ChessPieceColor sideToMove = position.getSideToMove();
+		GameStatus status = mover.gameStatus();
+		if (status == GameStatus.CHECKMATE) {
+			gameOver = true;
+			return moveText + " checkmate " + (sideToMove.equals(ChessPieceColor.WHITE) ? ChessPieceColor.BLACK : ChessPieceColor.WHITE) + " wins";
+		}
+		if (status == GameStatus.STALEMATE) {
+			gameOver = true;
+			return moveText + " stalemate draw";
+		}
+		if (status.isDraw()) {
+			gameOver = true;
+			return moveText + " " + status;
+		}
+		return moveText + " " + sideToMove + " to move";
+	}
+	
+	private String boardString() {
+		// ranks 7 down to 0 separated by '/', one character per square: upper case White,
+		// lower case Black (K Q R B N P), '.' for an empty square
+		StringBuilder board = new StringBuilder(71);
+		for (int y = ChessUtil.endBound; y >= ChessUtil.begBound; y--) {
+			for (int x = ChessUtil.begBound; x <= ChessUtil.endBound; x++) {
+				ChessPiece piece = position.pieceAt(ChessPosition.square(x, y));
+				board.append(piece == null ? '.' : ChessUtil.pieceLetter(piece));
+			}
+			if (y > ChessUtil.begBound) {
+				board.append('/');
+			}
+		}
+		return board.toString();
+	}
+
+}
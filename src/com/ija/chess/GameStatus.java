@@ -0,0 +1,35 @@
+package com.ija.chess;
+
+// state of a game for the side to move (ChessMove.gameStatus): it can move, it is
+// checkmated (in check without a legal move) or stalemated (not in check, no legal move),
+// or the game is drawn by rule (the position occurred for the third time, fifty moves
+// by each side without a capture or Pawn move, or no mate is possible any more)
+
+public enum GameStatus {
+
+	ONGOING ("ongoing"),
+	CHECKMATE ("checkmate"),
+	STALEMATE ("stalemate"),
+	THREEFOLD_REPETITION ("draw by threefold repetition"),
+	FIFTY_MOVE_RULE ("draw by the fifty-move rule"),
+	INSUFFICIENT_MATERIAL ("draw by insufficient material");
+
+	private final String status;
+
+	private GameStatus(String s) {
+		status = s;
+	}
+
+	public boolean isOver() {
+		return this != ONGOING;
+	}
+
+	public boolean isDraw() {
+		return this != ONGOING && this != CHECKMATE;
+	}
+
+	public String toString() {
+		return this.status;
+	}
+
+}
@@ -0,0 +1,59 @@
+package com.ija.chess;
+
+// reusable, caller-owned list of int-encoded moves (see MoveCode).  The backing
+// array is allocated once so that filling the buffer does not allocate per move.
+
+public class MoveBuffer {
+	
+	public static final int DEFAULT_CAPACITY = 256;
+	
+	private int[] moves;
+	private int size = 0;
+	
+	public MoveBuffer() {
+		this(DEFAULT_CAPACITY);
+	}
+	
+	public MoveBuffer(int capacity) {
+		this.moves = new int[capacity];
+	}
+	
+	public void clear() {
+		size = 0;
+	}
+	
+	public void add(int move) {
+		moves[size++] = move;
+	}
+	
+	public int get(int index) {
+		return moves[index];
+	}
+	
+	public void set(int index, int move) {
+		moves[index] = move;
+	}
+	
+	public void truncate(int newSize) {
+		// keep only the first newSize moves (e.g. after moving the wanted ones to the front)
+		size = newSize;
+	}
+	
+	public int size() {
+		return size;
+	}
+	
+	public boolean isEmpty() {
+		return size == 0;
+	}
+	
+	public boolean contains(int move) {
+		for (int i = 0; i < size; i++) {
+			if (moves[i] == move) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+}
@@ -0,0 +1,78 @@
+package com.ija.chess;
+
+import java.awt.Point;
+
+// this is a utility class for the compact int encoding of a move used by the
+// move generator:
+//   bits 0-5   from square (y * 8 + x)
+//   bits 6-11  to square
+//   bits 12-14 promotion piece (0 = none, otherwise ChessPieceType ordinal + 1)
+//   bit 15     castle (King move; the rook move is implied)
+//   bit 16     capture
+//   bit 17     pawn two-square advance
+
+public final class MoveCode {
+	
+	public static final int NONE = 0;
+	public static final int CASTLE = 1 << 15;
+	public static final int CAPTURE = 1 << 16;
+	public static final int DOUBLE_PAWN_PUSH = 1 << 17;
+	
+	private static final int SQUARE_MASK = 0x3F;
+	private static final int PROMOTION_SHIFT = 12;
+	private static final int PROMOTION_MASK = 0x7;
+	
+	private MoveCode() {
+	}
+	
+	public static int encode(int from, int to, int flags) {
+		return from | (to << 6) | flags;
+	}
+	
+	public static int encode(int from, int to, ChessPieceType promotion, int flags) {
+		return from | (to << 6) | ((promotion.ordinal() + 1) << PROMOTION_SHIFT) | flags;
+	}
+	
+	public static int from(int move) {
+		return move & SQUARE_MASK;
+	}
+	
+	public static int to(int move) {
+		return (move >>> 6) & SQUARE_MASK;
+	}
+	
+	public static ChessPieceType promotion(int move) {
+		int code = (move >>> PROMOTION_SHIFT) & PROMOTION_MASK;
+		return (code == 0) ? null : ChessPieceType.values()[code - 1];
+	}
+	
+	public static boolean isPromotion(int move) {
+		return ((move >>> PROMOTION_SHIFT) & PROMOTION_MASK) != 0;
+	}
+	
+	public static boolean isCastle(int move) {
+		return (move & CASTLE) != 0;
+	}
+	
+	public static boolean isCapture(int move) {
+		return (move & CAPTURE) != 0;
+	}
+	
+	public static boolean isDoublePawnPush(int move) {
+		return (move & DOUBLE_PAWN_PUSH) != 0;
+	}
+	
+	public static Point fromPoint(int move) {
+		return ChessPosition.toPoint(from(move));
+	}
+	
+	public static Point toPoint(int move) {
+		return ChessPosition.toPoint(to(move));
+	}
+	
+	public static String format(int move) {
+		// readable form of a move: x,y-x,y
+		return ChessUtil.formatSquare(from(move)) + "-" + ChessUtil.formatSquare(to(move));
+	}
+
+}
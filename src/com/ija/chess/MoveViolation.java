@@ -0,0 +1,45 @@
+package com.ija.chess;
+
+// the rule a rejected move broke (ChessMove.getViolation): a compact reason code
+// recorded by validateMove without building any text.  The full message is only
+// rendered when ChessMove.getErrorList or getViolationMessage asks for it.
+
+public enum MoveViolation {
+
+	NONE ("none"),
+	NO_PIECE_TO_MOVE ("no piece to move"),
+	WRONG_COLOR ("opposing piece"),
+	TARGET_OFF_BOARD ("target off the board"),
+	BISHOP_PATH ("not a Bishop path"),
+	ROOK_PATH ("not a Rook path"),
+	KNIGHT_PATH ("not a Knight path"),
+	QUEEN_PATH ("not a Queen path"),
+	PAWN_ADVANCE ("Pawn advance rule"),
+	PAWN_CAPTURE ("Pawn capture rule"),
+	KING_PATH ("not a King path"),
+	CASTLE_LEFT_ROOK ("castle with left rook rule"),
+	CASTLE_RIGHT_ROOK ("castle with right rook rule"),
+	PATH_BLOCKED ("path blocked"),
+	TARGET_OWN_PIECE ("own piece on target"),
+	KING_IN_CHECK ("King left in check");
+
+	private final String description;
+
+	private MoveViolation(String s) {
+		description = s;
+	}
+
+	public String getDescription() {
+		return description;
+	}
+
+	public int mask() {
+		// this violation as a bit, for callers collecting the rules broken over many moves
+		return 1 << ordinal();
+	}
+
+	public String toString() {
+		return this.description;
+	}
+
+}
@@ -0,0 +1,104 @@
+package com.ija.chess;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// opening book file (built by OpeningBookBuilder): a 16 byte header ("CHBK", version,
+// record count) followed by fixed 16 byte records
+//   position key (long, ChessPosition.positionKey), move (int, MoveCode), weight (int)
+// sorted by key and, for the same key, by falling weight.  The file is memory-mapped
+// and looked up by binary search on the records, so a probe reads a few pages of the
+// mapping and allocates nothing.  A key is only 64 bits, so callers should make sure a
+// book move is legal before playing it.
+
+public class OpeningBook {
+
+	public static final byte[] MAGIC = {'C', 'H', 'B', 'K'};
+	// version 2: the position keys no longer include an en passant square
+	public static final int VERSION = 2;
+	public static final int HEADER_SIZE = 16;
+	public static final int RECORD_SIZE = 16;
+
+	private final MappedByteBuffer records;
+	private final int recordCount;
+
+	public OpeningBook(Path file) throws IOException {
+		FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+		try {
+			if (channel.size() < HEADER_SIZE) {
+				throw new IOException(file + " is not an opening book");
+			}
+			ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+			for (int i = 0; i < MAGIC.length; i++) {
+				if (header.get(i) != MAGIC[i]) {
+					throw new IOException(file + " is not an opening book");
+				}
+			}
+			if (header.getInt(4) != VERSION) {
+				throw new IOException(file + " is not a version " + VERSION + " opening book");
+			}
+			recordCount = header.getInt(8);
+			if (channel.size() < HEADER_SIZE + (long) recordCount * RECORD_SIZE) {
+				throw new IOException(file + " is truncated");
+			}
+			records = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE, (long) recordCount * RECORD_SIZE);
+		} finally {
+			// the mapping stays valid after the channel is closed
+			channel.close();
+		}
+	}
+
+	public int size() {
+		return recordCount;
+	}
+
+	public int probe(long key) {
+		// the book move with the highest weight for the position key, or ChessEngine.NO_MOVE
+		int first = firstRecord(key);
+		return (first < 0) ? ChessEngine.NO_MOVE : records.getInt(first * RECORD_SIZE + 8);
+	}
+
+	public int probe(long key, MoveBuffer out) {
+		// all book moves for the position key, best first; returns how many there are
+		out.clear();
+		int index = firstRecord(key);
+		while (index >= 0 && index < recordCount && records.getLong(index * RECORD_SIZE) == key) {
+			out.add(records.getInt(index * RECORD_SIZE + 8));
+			index++;
+		}
+		return out.size();
+	}
+
+	public int weight(long key, int move) {
+		// the weight of a book move (0 if it is not in the book)
+		int index = firstRecord(key);
+		while (index >= 0 && index < recordCount && records.getLong(index * RECORD_SIZE) == key) {
+			if (records.getInt(index * RECORD_SIZE + 8) == move) {
+				return records.getInt(index * RECORD_SIZE + 12);
+			}
+			index++;
+		}
+		return 0;
+	}
+
+	private int firstRecord(long key) {
+		// index of the first record with the key (binary search), or -1
+		int low = 0;
+		int high = recordCount;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (records.getLong(middle * RECORD_SIZE) < key) {
+				low = middle + 1;
+			}
+			else {
+				high = middle;
+			}
+		}
+		return (low < recordCount && records.getLong(low * RECORD_SIZE) == key) ? low : -1;
+	}
+
+}
@@ -0,0 +1,138 @@
+package com.ija.chess;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+// builds an OpeningBook file from a PGN corpus.  The games are played through the
+// rules by PgnValidator; for every game without an illegal move the first maxPlies
+// moves are counted per position key, and a move's weight is the number of games in
+// which it was played from that position.  Moves played in fewer than minWeight games
+// are left out.
+
+public class OpeningBookBuilder extends PgnValidator {
+
+	public static final int DEFAULT_MAX_PLIES = 20;
+
+	private final int maxPlies;
+	private final int minWeight;
+	// position key -> {number of moves, move, count, move, count, ...}
+	private final Map<Long, int[]> entries = new HashMap<Long, int[]>();
+	private long[] gameKeys;
+	private int[] gameMoves;
+	private int gamePly = 0;
+
+	public OpeningBookBuilder(PrintStream out, int maxPlies, int minWeight) {
+		super(out);
+		this.maxPlies = maxPlies;
+		this.minWeight = Math.max(1, minWeight);
+		this.gameKeys = new long[maxPlies];
+		this.gameMoves = new int[maxPlies];
+	}
+
+	public int build(Path pgnFile, Path bookFile) throws IOException {
+		// read the corpus and write the book; returns the number of book records
+		validate(pgnFile);
+		return write(bookFile);
+	}
+
+	protected void movePlayed(ChessPosition position, int move) {
+		if (gamePly < maxPlies) {
+			gameKeys[gamePly] = position.positionKey();
+			gameMoves[gamePly] = move;
+		}
+		gamePly++;
+	}
+
+	protected void gameEnded(byte[] result, int length, boolean valid) {
+		if (valid) {
+			for (int i = 0; i < Math.min(gamePly, maxPlies); i++) {
+				count(gameKeys[i], gameMoves[i]);
+			}
+		}
+		gamePly = 0;
+	}
+
+	private void count(long key, int move) {
+		int[] moves = entries.get(key);
+		if (moves == null) {
+			entries.put(key, new int[] {1, move, 1, 0, 0});
+			return;
+		}
+		int n = moves[0];
+		for (int i = 0; i < n; i++) {
+			if (moves[1 + 2 * i] == move) {
+				moves[2 + 2 * i]++;
+				return;
+			}
+		}
+		if (1 + 2 * (n + 1) > moves.length) {
+			moves = Arrays.copyOf(moves, moves.length * 2);
+			entries.put(key, moves);
+		}
+		moves[1 + 2 * n] = move;
+		moves[2 + 2 * n] = 1;
+		moves[0] = n + 1;
+	}
+
+	private int write(Path bookFile) throws IOException {
+		// records sorted by key, then by falling weight (then by move, so the file is reproducible)
+		long[] keys = new long[entries.size()];
+		int k = 0;
+		int recordCount = 0;
+		for (Map.Entry<Long, int[]> mapEntry : entries.entrySet()) {
+			keys[k++] = mapEntry.getKey();
+			int[] moves = mapEntry.getValue();
+			for (int i = 0; i < moves[0]; i++) {
+				if (moves[2 + 2 * i] >= minWeight) {
+					recordCount++;
+				}
+			}
+		}
+		Arrays.sort(keys);
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(bookFile.toFile()), 1 << 16));
+		try {
+			out.write(OpeningBook.MAGIC);
+			out.writeInt(OpeningBook.VERSION);
+			out.writeInt(recordCount);
+			out.writeInt(0);
+			for (long key : keys) {
+				int[] moves = entries.get(key);
+				sortByWeight(moves);
+				for (int i = 0; i < moves[0]; i++) {
+					if (moves[2 + 2 * i] >= minWeight) {
+						out.writeLong(key);
+						out.writeInt(moves[1 + 2 * i]);
+						out.writeInt(moves[2 + 2 * i]);
+					}
+				}
+			}
+		} finally {
+			out.close();
+		}
+		return recordCount;
+	}
+
+	private static void sortByWeight(int[] moves) {
+		// insertion sort of the (move, count) pairs: highest count first, then lowest move
+		for (int i = 1; i < moves[0]; i++) {
+			int move = moves[1 + 2 * i];
+			int weight = moves[2 + 2 * i];
+			int j = i - 1;
+			while (j >= 0 && (moves[2 + 2 * j] < weight || (moves[2 + 2 * j] == weight && moves[1 + 2 * j] > move))) {
+				moves[1 + 2 * (j + 1)] = moves[1 + 2 * j];
+				moves[2 + 2 * (j + 1)] = moves[2 + 2 * j];
+				j--;
+			}
+			moves[1 + 2 * (j + 1)] = move;
+			moves[2 + 2 * (j + 1)] = weight;
+		}
+	}
+
+}
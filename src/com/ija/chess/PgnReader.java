@@ -0,0 +1,247 @@
+package com.ija.chess;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// streaming reader of PGN files.  The file is memory-mapped one window at a time and
+// scanned byte by byte; tag pairs, move text tokens and game results are handed to a
+// Listener as byte ranges of reusable buffers, so neither the file nor a game is ever
+// held in memory as a whole and no String is made per game or per move.
+// Comments ({...} and ; to end of line), variations ((...), nested), numeric
+// annotation glyphs ($n), move numbers and "%" escape lines are skipped.
+
+public class PgnReader {
+
+	public interface Listener {
+		// offset is the file position where the game's text starts
+		void startGame(long offset);
+		void tag(byte[] name, int nameLength, byte[] value, int valueLength);
+		// returns false when the rest of the game's moves are not wanted (e.g. after an illegal move)
+		boolean move(byte[] san, int length);
+		// result is "1-0", "0-1", "1/2-1/2" or "*", or has length 0 if the file ended first
+		void endGame(byte[] result, int length);
+	}
+
+	private static final long WINDOW_SIZE = 64L << 20;
+	private static final int MAX_TOKEN = 255;
+	private static final int EOF = -1;
+
+	private final FileChannel channel;
+	private final long size;
+	private MappedByteBuffer window;
+	private long windowStart = 0;
+	private int current;
+
+	private final byte[] token = new byte[MAX_TOKEN];
+	private final byte[] tagValue = new byte[MAX_TOKEN];
+	private int tokenLength;
+	private boolean inGame = false;
+	private boolean wantMoves = true;
+
+	public PgnReader(Path file) throws IOException {
+		this.channel = FileChannel.open(file, StandardOpenOption.READ);
+		this.size = channel.size();
+		mapWindow(0);
+	}
+
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	private void mapWindow(long start) throws IOException {
+		windowStart = start;
+		window = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(WINDOW_SIZE, size - start));
+	}
+
+	private long offset() {
+		// file position of the current byte
+		return windowStart + window.position() - 1;
+	}
+
+	private int advance() throws IOException {
+		// move to the next byte of the file (EOF at the end)
+		if (!window.hasRemaining()) {
+			long next = windowStart + window.limit();
+			if (next >= size) {
+				current = EOF;
+				return current;
+			}
+			mapWindow(next);
+		}
+		current = window.get() & 0xFF;
+		return current;
+	}
+
+	public void read(Listener listener) throws IOException {
+		// scan the whole file, reporting every game to the listener
+		advance();
+		while (current != EOF) {
+			if (current <= ' ') {
+				advance();
+			}
+			else if (current == '[') {
+				readTag(listener);
+			}
+			else if (current == '{') {
+				skipPast('}');
+			}
+			else if (current == ';' || current == '%') {
+				skipPast('\n');
+			}
+			else if (current == '(') {
+				skipVariation();
+			}
+			else if (current == '$' || current == ')' || current == ']' || current == '}') {
+				advance();
+				while (current >= '0' && current <= '9') {
+					advance();
+				}
+			}
+			else {
+				readMoveTextToken(listener);
+			}
+		}
+		if (inGame) {
+			listener.endGame(token, 0);
+			inGame = false;
+		}
+	}
+
+	private void beginGame(Listener listener) {
+		if (!inGame) {
+			inGame = true;
+			wantMoves = true;
+			listener.startGame(offset());
+		}
+	}
+
+	private void readTag(Listener listener) throws IOException {
+		// [Name "value"] with \" and \\ escapes in the value
+		beginGame(listener);
+		advance();
+		while (current == ' ') {
+			advance();
+		}
+		tokenLength = 0;
+		while (current != EOF && current > ' ' && current != '"' && current != ']') {
+			store(token);
+			advance();
+		}
+		int nameLength = tokenLength;
+		while (current != EOF && current != '"' && current != ']') {
+			advance();
+		}
+		int valueLength = 0;
+		if (current == '"') {
+			advance();
+			while (current != EOF && current != '"') {
+				if (current == '\\') {
+					advance();
+				}
+				if (valueLength < MAX_TOKEN && current != EOF) {
+					tagValue[valueLength++] = (byte) current;
+				}
+				advance();
+			}
+		}
+		skipPast(']');
+		listener.tag(token, nameLength, tagValue, valueLength);
+	}
+
+	private void readMoveTextToken(Listener listener) throws IOException {
+		// a move number, a result or a SAN move
+		tokenLength = 0;
+		while (current != EOF && current > ' ' && current != '{' && current != '(' && current != ')' &&
+				current != ';' && current != '[' && current != '$') {
+			store(token);
+			advance();
+		}
+		int start = 0;
+		while (start < tokenLength && token[start] >= '0' && token[start] <= '9') {
+			start++;
+		}
+		if (start < tokenLength && token[start] == '.') {
+			// move number ("12." or "12..."), possibly run together with the move ("12.e4")
+			while (start < tokenLength && token[start] == '.') {
+				start++;
+			}
+		}
+		else if (isResult()) {
+			beginGame(listener);
+			listener.endGame(token, tokenLength);
+			inGame = false;
+			return;
+		}
+		else {
+			start = 0;
+		}
+		if (start < tokenLength) {
+			beginGame(listener);
+			if (wantMoves) {
+				if (start > 0) {
+					System.arraycopy(token, start, token, 0, tokenLength - start);
+				}
+				wantMoves = listener.move(token, tokenLength - start);
+			}
+		}
+	}
+
+	private boolean isResult() {
+		return equalsToken("1-0") || equalsToken("0-1") || equalsToken("1/2-1/2") || equalsToken("*");
+	}
+
+	private boolean equalsToken(String text) {
+		if (text.length() != tokenLength) {
+			return false;
+		}
+		for (int i = 0; i < tokenLength; i++) {
+			if (token[i] != text.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private void store(byte[] buffer) {
+		if (tokenLength < MAX_TOKEN) {
+			buffer[tokenLength++] = (byte) current;
+		}
+	}
+
+	private void skipPast(int end) throws IOException {
+		while (current != EOF && current != end) {
+			advance();
+		}
+		advance();
+	}
+
+	private void skipVariation() throws IOException {
+		// skip a (possibly nested) variation including the comments inside it
+		int depth = 0;
+		while (current != EOF) {
+			if (current == '(') {
+				depth++;
+			}
+			else if (current == ')') {
+				depth--;
+				if (depth == 0) {
+					advance();
+					return;
+				}
+			}
+			else if (current == '{') {
+				skipPast('}');
+				continue;
+			}
+			else if (current == ';') {
+				skipPast('\n');
+				continue;
+			}
+			advance();
+		}
+	}
+
+}
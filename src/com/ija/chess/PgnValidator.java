@@ -0,0 +1,257 @@
+package com.ija.chess;
+
+import java.awt.Point;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+// PgnReader listener that plays every game of a PGN file through the ChessMove rules.
+// Each SAN move is resolved against the legal moves of the current position; a move
+// that resolves to none of them is reported with the ChessMove error messages for the
+// piece(s) it names and ends that game.  Games with a FEN tag start from that
+// position; if the FEN is not valid the game is reported and counted as skipped.
+// Subclasses can watch the games through movePlayed() and gameEnded().
+
+public class PgnValidator implements PgnReader.Listener {
+
+	private static final String noPieceForMove = "Cannot move to %s since no %s %s can make the move %s";
+	private static final String ambiguousMove = "Cannot play %s since it does not say which of several %s pieces moves";
+	private static final String unreadableMove = "Cannot read the move %s";
+	private static final String onlyQueenPromotion = "Cannot play %s since a Pawn is always promoted to Queen";
+
+	private final PrintStream out;
+	private final ChessPosition startPosition = ChessPosition.fromBoardMap(ChessUtil.initBoard());
+	private final Map<ChessPiece, Point> capturedPiecesMap = new HashMap<ChessPiece, Point>();
+	private final MoveBuffer moveBuffer = new MoveBuffer();
+	private ChessPosition position;
+	private ChessMove mover;
+
+	private long games = 0;
+	private long moves = 0;
+	private long illegalGames = 0;
+	private long skippedGames = 0;
+	private long gameOffset;
+	private boolean skipGame;
+	private boolean illegalGame;
+
+	// the parts of the SAN move being resolved
+	private ChessPieceType sanType;
+	private ChessPieceType sanPromotion;
+	private int sanTarget;
+	private int sanFromFile;
+	private int sanFromRank;
+	private String error;
+
+	public PgnValidator(PrintStream out) {
+		this.out = out;
+	}
+
+	public long getGames() {
+		return games;
+	}
+
+	public long getMoves() {
+		return moves;
+	}
+
+	public long getIllegalGames() {
+		return illegalGames;
+	}
+
+	public void validate(Path file) throws IOException {
+		// read and check every game of the file, then print the summary
+		long startNanos = System.nanoTime();
+		PgnReader reader = new PgnReader(file);
+		try {
+			reader.read(this);
+		} finally {
+			reader.close();
+		}
+		long millis = (System.nanoTime() - startNanos) / 1000000L;
+		out.println("pgn games " + games + " moves " + moves + " illegal " + illegalGames +
+				" skipped " + skippedGames + " millis " + millis +
+				" games/s " + (games * 1000L / Math.max(1L, millis)));
+		out.flush();
+	}
+
+	public void startGame(long offset) {
+		games++;
+		gameOffset = offset;
+		skipGame = false;
+		illegalGame = false;
+		capturedPiecesMap.clear();
+		position = startPosition.duplicate();
+		mover = new ChessMove(position, capturedPiecesMap, ChessPieceColor.WHITE);
+	}
+
+	public void tag(byte[] name, int nameLength, byte[] value, int valueLength) {
+		if (nameLength == 3 && name[0] == 'F' && name[1] == 'E' && name[2] == 'N') {
+			String fen = new String(value, 0, valueLength);
+			try {
+				position = ChessFen.parse(fen);
+				mover = new ChessMove(position, capturedPiecesMap, position.getSideToMove());
+			} catch (IllegalArgumentException ex) {
+				skipGame = true;
+				out.println("skipped game " + games + " at byte " + gameOffset + ": " + ex.getMessage());
+			}
+		}
+	}
+
+	public boolean move(byte[] san, int length) {
+		if (skipGame) {
+			return false;
+		}
+		int move = resolve(san, length);
+		if (move == ChessEngine.NO_MOVE) {
+			illegalGames++;
+			illegalGame = true;
+			out.println("illegal game " + games + " at byte " + gameOffset + " move " + position.getFullmoveNumber() +
+					(position.getSideToMove().equals(ChessPieceColor.WHITE) ? ". " : "... ") + new String(san, 0, length) + ": " + error);
+			return false;
+		}
+		movePlayed(position, move);
+		position.makeMove(move);
+		position.clearUndoHistory();
+		moves++;
+		return true;
+	}
+
+	public void endGame(byte[] result, int length) {
+		if (skipGame) {
+			skippedGames++;
+		}
+		gameEnded(result, length, !skipGame && !illegalGame);
+	}
+
+	protected void movePlayed(ChessPosition position, int move) {
+		// called with each legal move just before it is made on the position
+	}
+
+	protected void gameEnded(byte[] result, int length, boolean valid) {
+		// called at the end of each game; valid is false if it was skipped or had an illegal move
+	}
+
+	private int resolve(byte[] san, int length) {
+		// the legal move named by a SAN move, or NO_MOVE with error set
+		error = null;
+		if (!parse(san, length)) {
+			error = String.format(unreadableMove, new String(san, 0, length));
+			return ChessEngine.NO_MOVE;
+		}
+		mover.generateLegalMoves(moveBuffer);
+		int found = ChessEngine.NO_MOVE;
+		int matches = 0;
+		for (int i = 0; i < moveBuffer.size(); i++) {
+			int move = moveBuffer.get(i);
+			if (MoveCode.to(move) == sanTarget && matchesFrom(MoveCode.from(move))) {
+				found = move;
+				matches++;
+			}
+		}
+		if (matches == 1) {
+			if (MoveCode.isPromotion(found) && sanPromotion != null && !sanPromotion.equals(ChessPieceType.QUEEN)) {
+				error = String.format(onlyQueenPromotion, new String(san, 0, length));
+				return ChessEngine.NO_MOVE;
+			}
+			return found;
+		}
+		if (matches > 1) {
+			error = String.format(ambiguousMove, new String(san, 0, length), sanType);
+			return ChessEngine.NO_MOVE;
+		}
+		// not legal: let the rules explain why for the first piece the move could mean
+		ChessPieceColor side = position.getSideToMove();
+		Point target = ChessPosition.toPoint(sanTarget);
+		for (int i = 0; i < position.pieceCount(side); i++) {
+			int from = position.pieceSquare(side, i);
+			if (matchesFrom(from) && !mover.validateMove(ChessPosition.toPoint(from), target)) {
+				StringBuilder errors = new StringBuilder();
+				for (String errorStr : mover.getErrorList()) {
+					errors.append(errors.length() > 0 ? "; " : "").append(errorStr);
+				}
+				error = errors.toString();
+				return ChessEngine.NO_MOVE;
+			}
+		}
+		error = String.format(noPieceForMove, ChessUtil.formatSquare(sanTarget), side, sanType, new String(san, 0, length));
+		return ChessEngine.NO_MOVE;
+	}
+
+	private boolean matchesFrom(int from) {
+		ChessPiece piece = position.pieceAt(from);
+		return piece != null && piece.getType().equals(sanType) &&
+				(sanFromFile < 0 || ChessPosition.fileOf(from) == sanFromFile) &&
+				(sanFromRank < 0 || ChessPosition.rankOf(from) == sanFromRank);
+	}
+
+	private boolean parse(byte[] san, int length) {
+		// split a SAN move (e.g. "e4", "Nbd7", "exd8=Q+", "O-O-O") into piece type, target
+		// square, from file/rank (-1 if not given) and promotion
+		int end = length;
+		while (end > 0 && (san[end - 1] == '+' || san[end - 1] == '#' || san[end - 1] == '!' || san[end - 1] == '?')) {
+			end--;
+		}
+		sanPromotion = null;
+		sanFromFile = -1;
+		sanFromRank = -1;
+		if (end > 0 && (san[0] == 'O' || san[0] == '0')) {
+			// castling: the King moves two squares towards the rook
+			int kingSquare = position.kingSquare(position.getSideToMove());
+			if (kingSquare == ChessPosition.NO_SQUARE || (end != 3 && end != 5)) {
+				return false;
+			}
+			sanType = ChessPieceType.KING;
+			sanTarget = kingSquare + ((end == 3) ? 2 : -2);
+			sanFromFile = ChessPosition.fileOf(kingSquare);
+			sanFromRank = ChessPosition.rankOf(kingSquare);
+			return ChessPosition.onBoard(ChessPosition.fileOf(kingSquare) + ((end == 3) ? 2 : -2), sanFromRank);
+		}
+		int start = 0;
+		sanType = (end > 0) ? pieceType(san[0]) : null;
+		if (sanType != null) {
+			start = 1;
+		}
+		else {
+			sanType = ChessPieceType.PAWN;
+		}
+		if (end - start >= 2 && pieceType(san[end - 1]) != null) {
+			sanPromotion = pieceType(san[end - 1]);
+			end -= (san[end - 2] == '=') ? 2 : 1;
+		}
+		if (end - start < 2) {
+			return false;
+		}
+		int file = san[end - 2] - 'a';
+		int rank = san[end - 1] - '1';
+		if (!ChessPosition.onBoard(file, rank)) {
+			return false;
+		}
+		sanTarget = ChessPosition.square(file, rank);
+		for (int i = start; i < end - 2; i++) {
+			if (san[i] >= 'a' && san[i] <= 'h') {
+				sanFromFile = san[i] - 'a';
+			}
+			else if (san[i] >= '1' && san[i] <= '8') {
+				sanFromRank = san[i] - '1';
+			}
+			else if (san[i] != 'x' && san[i] != ':') {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static ChessPieceType pieceType(byte letter) {
+		switch (letter) {
+		case 'K': return ChessPieceType.KING;
+		case 'Q': return ChessPieceType.QUEEN;
+		case 'R': return ChessPieceType.ROOK;
+		case 'B': return ChessPieceType.BISHOP;
+		case 'N': return ChessPieceType.KNIGHT;
+		default: return null;
+		}
+	}
+
+}
@@ -0,0 +1,565 @@
+package com.ija.chess;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongBinaryOperator;
+
+// builds Tablebases files by retrograde analysis.  For one material set:
+//  1. every index is decoded into a position; impossible ones (pieces on the same square,
+//     Pawns on the first/last rank, the side not to move in check) are marked invalid.
+//     For the others the legal moves are generated once: checkmate and stalemate are
+//     found, moves that stay within the material are counted, and moves that capture or
+//     promote are looked up in the (already generated) smaller tables.
+//  2. level by level (ply 1, 2, ...) the positions resolved at the previous ply are taken
+//     back one move (un-moves): a predecessor of a lost position is won, and a
+//     predecessor whose last undecided move turned out to lead to a won position is lost.
+//  3. whatever is never resolved is a draw.
+// Every step is split over a pool of threads by index range; results are compared and
+// set with atomic byte operations, so the tables are the same for any thread count.
+// The smaller tables a material set depends on are generated first.
+
+public class TablebaseGenerator {
+
+	private static final VarHandle BYTES = MethodHandles.arrayElementVarHandle(byte[].class);
+	private static final int UNRESOLVED = 0;
+	private static final int INVALID = 0xFF;
+	private static final int NO_LOSS = 0x80;
+	private static final int EXIT_WIN = 0x80;
+	private static final int CHUNKS = 256;
+
+	private final Tablebases tablebases;
+	private final int threads;
+	private final PrintStream out;
+
+	// the material set being generated: piece slots in index order
+	private int n;
+	private int[] slotType;
+	private int[] slotColor;
+	private int size;
+	// per side to move: working value (0 unresolved, ply + 1 once resolved, INVALID), count
+	// of undecided moves within the material (NO_LOSS bit if some move avoids losing), and
+	// what capturing/promoting moves lead to (EXIT_WIN bit and the winning ply, or the ply
+	// of the slowest loss)
+	private byte[][] value;
+	private byte[][] counter;
+	private byte[][] exit;
+
+	public TablebaseGenerator(Tablebases tablebases, int threads, PrintStream out) {
+		this.tablebases = tablebases;
+		this.threads = Math.max(1, threads);
+		this.out = out;
+	}
+
+	public void generate(String materialName) throws IOException {
+		// generate the table for a material set such as "KQK" (and the tables it needs)
+		int material = Tablebases.parseMaterial(materialName);
+		if (material < 0) {
+			throw new IllegalArgumentException("Not a material set of at most " + Tablebases.MAX_PIECES + " pieces with one King each: " + materialName);
+		}
+		generate(material);
+	}
+
+	private void generate(int material) throws IOException {
+		if (!Tablebases.isCanonical(material)) {
+			material = Tablebases.flipMaterial(material);
+		}
+		if (material == 0 || new File(tablebases.getDirectory(), Tablebases.materialName(material) + ".tb").isFile()) {
+			return;
+		}
+		for (int child : childMaterials(material)) {
+			generate(child);
+		}
+		long startNanos = System.nanoTime();
+		setUp(material);
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		try {
+			final AtomicLong maxExitPly = new AtomicLong(0);
+			runChunks(pool, new ChunkTask() {
+				public long run(int from, int to) {
+					long pliesSeen = 0;
+					int[] squares = new int[n];
+					for (int index = from; index < to; index++) {
+						for (int side = 0; side < 2; side++) {
+							pliesSeen = Math.max(pliesSeen, initialize(index, side, squares));
+						}
+					}
+					final long chunkPlies = pliesSeen;
+					maxExitPly.accumulateAndGet(chunkPlies, new LongBinaryOperator() {
+						public long applyAsLong(long left, long right) {
+							return Math.max(left, right);
+						}
+					});
+					return 0;
+				}
+			});
+			for (int level = 1; level < INVALID - 1; level++) {
+				final int ply = level;
+				runChunks(pool, new ChunkTask() {
+					public long run(int from, int to) {
+						int[] squares = new int[n];
+						for (int index = from; index < to; index++) {
+							for (int side = 0; side < 2; side++) {
+								if ((value[side][index] & 0xFF) == ply) {
+									retract(index, side, ply, squares);
+								}
+							}
+						}
+						return 0;
+					}
+				});
+				long changed = runChunks(pool, new ChunkTask() {
+					public long run(int from, int to) {
+						long resolved = 0;
+						for (int index = from; index < to; index++) {
+							for (int side = 0; side < 2; side++) {
+								resolveByExits(index, side, ply);
+								if ((value[side][index] & 0xFF) == ply + 1) {
+									resolved++;
+								}
+							}
+						}
+						return resolved;
+					}
+				});
+				if (changed == 0 && ply > maxExitPly.get()) {
+					break;
+				}
+			}
+		} finally {
+			pool.shutdown();
+		}
+		write(material, startNanos);
+	}
+
+	private void setUp(int material) {
+		n = Tablebases.materialPieces(material);
+		slotType = new int[n];
+		slotColor = new int[n];
+		int slot = 0;
+		for (int color = 0; color < 2; color++) {
+			slotType[slot] = 0;
+			slotColor[slot++] = color;
+			for (int type = 1; type < 6; type++) {
+				for (int k = 0; k < Tablebases.materialCount(material, color, type); k++) {
+					slotType[slot] = type;
+					slotColor[slot++] = color;
+				}
+			}
+		}
+		size = 1 << (6 * n);
+		value = new byte[2][size];
+		counter = new byte[2][size];
+		exit = new byte[2][size];
+	}
+
+	private static List<Integer> childMaterials(int material) {
+		// materials one capture and/or promotion away
+		List<Integer> children = new ArrayList<Integer>();
+		for (int color = 0; color < 2; color++) {
+			for (int type = 1; type < 6; type++) {
+				if (Tablebases.materialCount(material, color, type) > 0) {
+					children.add(material - digit(color, type));
+				}
+			}
+			if (Tablebases.materialCount(material, color, ChessPieceType.PAWN.ordinal()) > 0) {
+				int promoted = material - digit(color, ChessPieceType.PAWN.ordinal()) + digit(color, ChessPieceType.QUEEN.ordinal());
+				if (Tablebases.materialCount(material, color, ChessPieceType.QUEEN.ordinal()) < 2) {
+					children.add(promoted);
+					for (int type = 1; type < 6; type++) {
+						if (Tablebases.materialCount(promoted, 1 - color, type) > 0) {
+							children.add(promoted - digit(1 - color, type));
+						}
+					}
+				}
+			}
+		}
+		return children;
+	}
+
+	private static int digit(int color, int type) {
+		int digit = (color == 0) ? 1 : 243;
+		for (int k = 1; k < type; k++) {
+			digit *= 3;
+		}
+		return digit;
+	}
+
+	private interface ChunkTask {
+		long run(int from, int to);
+	}
+
+	private long runChunks(ExecutorService pool, final ChunkTask task) {
+		// run the task over the whole index range, split into chunks; returns the sum of the chunk results
+		List<Future<Long>> futures = new ArrayList<Future<Long>>();
+		int chunk = Math.max(1, size / CHUNKS);
+		for (int start = 0; start < size; start += chunk) {
+			final int from = start;
+			final int to = Math.min(size, start + chunk);
+			futures.add(pool.submit(new Callable<Long>() {
+				public Long call() {
+					return task.run(from, to);
+				}
+			}));
+		}
+		long total = 0;
+		for (Future<Long> future : futures) {
+			try {
+				total += future.get();
+			} catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("tablebase generation interrupted");
+			} catch (ExecutionException ex) {
+				throw new IllegalStateException("tablebase generation failed", ex.getCause());
+			}
+		}
+		return total;
+	}
+
+	private void decode(int index, int[] squares) {
+		for (int i = 0; i < n; i++) {
+			squares[i] = (index >>> (6 * (n - 1 - i))) & 63;
+		}
+	}
+
+	private long initialize(int index, int side, int[] squares) {
+		// mark an invalid position or count its moves; returns the largest ply an exit decides
+		decode(index, squares);
+		long occupied = 0L;
+		for (int i = 0; i < n; i++) {
+			long bit = 1L << squares[i];
+			if ((occupied & bit) != 0L ||
+					(slotType[i] == 5 && (ChessPosition.rankOf(squares[i]) == 0 || ChessPosition.rankOf(squares[i]) == 7))) {
+				value[side][index] = (byte) INVALID;
+				return 0;
+			}
+			occupied |= bit;
+		}
+		int opponent = 1 - side;
+		if (attacked(squares[kingSlot(opponent)], side, squares, -1, occupied)) {
+			value[side][index] = (byte) INVALID;
+			return 0;
+		}
+		int inTable = 0;
+		int noLoss = 0;
+		int exitWinPly = Integer.MAX_VALUE;
+		int exitLossPly = 0;
+		int legalMoves = 0;
+		long own = 0L;
+		for (int i = 0; i < n; i++) {
+			if (slotColor[i] == side) {
+				own |= 1L << squares[i];
+			}
+		}
+		for (int i = 0; i < n; i++) {
+			if (slotColor[i] != side) {
+				continue;
+			}
+			int from = squares[i];
+			long targets;
+			long promotions = 0L;
+			if (slotType[i] == 5) {
+				targets = pawnTargets(from, side, occupied, own);
+				promotions = targets & ((side == 0) ? 0xFF00000000000000L : 0xFFL);
+			}
+			else {
+				targets = pieceTargets(from, slotType[i], occupied) & ~own;
+			}
+			while (targets != 0L) {
+				int to = Long.numberOfTrailingZeros(targets);
+				targets &= targets - 1;
+				int captured = slotAt(squares, to);
+				squares[i] = to;
+				long occupiedAfter = (occupied & ~(1L << from)) | (1L << to);
+				boolean legal = !attacked(squares[kingSlot(side)], opponent, squares, captured, occupiedAfter);
+				if (legal) {
+					legalMoves++;
+					if (captured < 0 && (promotions & (1L << to)) == 0L) {
+						inTable++;
+					}
+					else {
+						int result = probeExit(squares, captured, i, (promotions & (1L << to)) != 0L, opponent);
+						int plies = Tablebases.distanceToMatePlies(result);
+						switch (Tablebases.outcome(result)) {
+						case Tablebases.LOSS:
+							exitWinPly = Math.min(exitWinPly, plies + 1);
+							break;
+						case Tablebases.WIN:
+							exitLossPly = Math.max(exitLossPly, plies + 1);
+							break;
+						default:
+							noLoss = NO_LOSS;
+						}
+					}
+				}
+				squares[i] = from;
+			}
+		}
+		if (legalMoves == 0) {
+			// checkmated (lost at ply 0) or stalemated (a draw: stays unresolved)
+			if (attacked(squares[kingSlot(side)], opponent, squares, -1, occupied)) {
+				value[side][index] = 1;
+			}
+			return 0;
+		}
+		if (exitWinPly != Integer.MAX_VALUE) {
+			noLoss = NO_LOSS;
+			exit[side][index] = (byte) (EXIT_WIN | exitWinPly);
+		}
+		else {
+			exit[side][index] = (byte) exitLossPly;
+		}
+		counter[side][index] = (byte) (inTable | noLoss);
+		return (exitWinPly != Integer.MAX_VALUE) ? exitWinPly : exitLossPly;
+	}
+
+	private int probeExit(int[] squares, int captured, int mover, boolean promotion, int sideToMove) {
+		// result (for the side to move next) of the position after a capture and/or promotion
+		long pieces = 0L;
+		int k = 0;
+		for (int i = 0; i < n; i++) {
+			if (i == captured) {
+				continue;
+			}
+			int type = (i == mover && promotion) ? ChessPieceType.QUEEN.ordinal() : slotType[i];
+			pieces |= Tablebases.packPiece(squares[i], type, slotColor[i]) << (10 * k++);
+		}
+		int result = tablebases.probe(pieces, k, sideToMove);
+		if (result == Tablebases.NOT_FOUND) {
+			throw new IllegalStateException("missing tablebase for a position with " + k + " pieces");
+		}
+		return result;
+	}
+
+	private void retract(int index, int side, int ply, int[] squares) {
+		// the position (index, side to move) was resolved at ply - 1: update its predecessors,
+		// the positions the other side could have moved from
+		decode(index, squares);
+		int mover = 1 - side;
+		boolean lost = ((ply - 1) & 1) == 0;
+		long occupied = 0L;
+		for (int i = 0; i < n; i++) {
+			occupied |= 1L << squares[i];
+		}
+		byte[] moverValue = value[mover];
+		byte[] moverCounter = counter[mover];
+		for (int i = 0; i < n; i++) {
+			if (slotColor[i] != mover) {
+				continue;
+			}
+			int to = squares[i];
+			long origins = (slotType[i] == 5) ? pawnOrigins(to, mover, occupied) : pieceTargets(to, slotType[i], occupied) & ~occupied;
+			int shift = 6 * (n - 1 - i);
+			while (origins != 0L) {
+				int from = Long.numberOfTrailingZeros(origins);
+				origins &= origins - 1;
+				int predecessor = index + ((from - to) << shift);
+				if (moverValue[predecessor] != UNRESOLVED) {
+					continue;
+				}
+				if (lost) {
+					BYTES.compareAndSet(moverValue, predecessor, (byte) UNRESOLVED, (byte) (ply + 1));
+				}
+				else {
+					int left = decrement(moverCounter, predecessor);
+					if (left == 0 && (exit[mover][predecessor] & 0xFF) <= ply) {
+						BYTES.compareAndSet(moverValue, predecessor, (byte) UNRESOLVED, (byte) (ply + 1));
+					}
+				}
+			}
+		}
+	}
+
+	private static int decrement(byte[] counters, int index) {
+		// atomically count down a move counter and return the new value (a compareAndSet loop:
+		// the byte getAndAdd gives wrong counts under the C2 compiler of JDK 17)
+		while (true) {
+			byte current = (byte) BYTES.getVolatile(counters, index);
+			if (BYTES.compareAndSet(counters, index, current, (byte) (current - 1))) {
+				return current - 1;
+			}
+		}
+	}
+
+	private void resolveByExits(int index, int side, int ply) {
+		// resolve a position at this ply because of its capturing/promoting moves: a win
+		// through one of them, or a loss once every other move is known to lose
+		if (value[side][index] != UNRESOLVED) {
+			return;
+		}
+		int exitValue = exit[side][index] & 0xFF;
+		if ((exitValue & EXIT_WIN) != 0 ? (exitValue & ~EXIT_WIN) == ply : counter[side][index] == 0 && exitValue == ply) {
+			value[side][index] = (byte) (ply + 1);
+		}
+	}
+
+	private int kingSlot(int color) {
+		return (color == 0) ? 0 : kingSlotBlack();
+	}
+
+	private int kingSlotBlack() {
+		for (int i = 1; i < n; i++) {
+			if (slotColor[i] == 1) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private static int slotAt(int[] squares, int square) {
+		for (int i = 0; i < squares.length; i++) {
+			if (squares[i] == square) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private boolean attacked(int square, int byColor, int[] squares, int excludedSlot, long occupied) {
+		// is the square attacked by a piece of byColor (ignoring a captured slot)?
+		for (int i = 0; i < n; i++) {
+			if (i == excludedSlot || slotColor[i] != byColor) {
+				continue;
+			}
+			int from = squares[i];
+			switch (slotType[i]) {
+			case 0:
+				if ((ChessTables.KING_ATTACKS[from] & (1L << square)) != 0L) {
+					return true;
+				}
+				break;
+			case 4:
+				if ((ChessTables.KNIGHT_ATTACKS[from] & (1L << square)) != 0L) {
+					return true;
+				}
+				break;
+			case 5:
+				if ((ChessTables.PAWN_ATTACKS[byColor][from] & (1L << square)) != 0L) {
+					return true;
+				}
+				break;
+			default:
+				int line = ChessTables.LINE[from][square];
+				if (line != ChessTables.NO_LINE &&
+						(slotType[i] == 1 || line == ((slotType[i] == 2) ? ChessTables.ORTHOGONAL : ChessTables.DIAGONAL)) &&
+						(ChessTables.BETWEEN[from][square] & occupied) == 0L) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	private static long pieceTargets(int from, int type, long occupied) {
+		// squares a King, Queen, Rook, Bishop or Knight on from attacks
+		switch (type) {
+		case 0: return ChessTables.KING_ATTACKS[from];
+		case 4: return ChessTables.KNIGHT_ATTACKS[from];
+		case 2: return ChessTables.rookAttacks(from, occupied);
+		case 3: return ChessTables.bishopAttacks(from, occupied);
+		default: return ChessTables.rookAttacks(from, occupied) | ChessTables.bishopAttacks(from, occupied);
+		}
+	}
+
+	private static long pawnTargets(int from, int color, long occupied, long own) {
+		// advances onto empty squares and captures of opposing pieces
+		int forward = (color == 0) ? 8 : -8;
+		long targets = ChessTables.PAWN_ATTACKS[color][from] & occupied & ~own;
+		int oneStep = from + forward;
+		if ((occupied & (1L << oneStep)) == 0L) {
+			targets |= 1L << oneStep;
+			int startRank = (color == 0) ? 1 : 6;
+			if (ChessPosition.rankOf(from) == startRank && (occupied & (1L << (oneStep + forward))) == 0L) {
+				targets |= 1L << (oneStep + forward);
+			}
+		}
+		return targets;
+	}
+
+	private static long pawnOrigins(int to, int color, long occupied) {
+		// squares a Pawn now on to could have advanced from (no capture, no promotion)
+		int forward = (color == 0) ? 8 : -8;
+		int rank = ChessPosition.rankOf(to);
+		int startRank = (color == 0) ? 1 : 6;
+		int oneBack = to - forward;
+		if (rank == startRank || rank == 7 - 7 * color || (occupied & (1L << oneBack)) != 0L) {
+			return 0L;
+		}
+		long origins = 1L << oneBack;
+		if (rank == startRank + 2 * (forward / 8) && (occupied & (1L << (oneBack - forward))) == 0L) {
+			origins |= 1L << (oneBack - forward);
+		}
+		return origins;
+	}
+
+	private void write(int material, long startNanos) throws IOException {
+		// pack the working values into result bytes and write the table file
+		String name = Tablebases.materialName(material);
+		long[] counts = new long[4];
+		int longest = 0;
+		for (int side = 0; side < 2; side++) {
+			byte[] values = value[side];
+			for (int index = 0; index < size; index++) {
+				int working = values[index] & 0xFF;
+				int result;
+				if (working == INVALID) {
+					result = Tablebases.INVALID;
+				}
+				else if (working == UNRESOLVED) {
+					result = Tablebases.DRAW;
+				}
+				else {
+					int ply = working - 1;
+					int moves = Math.min((ply + 1) / 2, Tablebases.DISTANCE_MASK);
+					result = (((ply & 1) == 1) ? Tablebases.WIN : Tablebases.LOSS) | moves;
+					longest = Math.max(longest, moves);
+				}
+				counts[result >>> 6]++;
+				values[index] = (byte) result;
+			}
+		}
+		File file = new File(tablebases.getDirectory(), name + ".tb");
+		File partial = new File(tablebases.getDirectory(), name + ".tb.part");
+		DataOutputStream stream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(partial), 1 << 16));
+		try {
+			stream.write(Tablebases.MAGIC);
+			stream.writeInt(Tablebases.VERSION);
+			byte[] header = new byte[Tablebases.HEADER_SIZE - 8];
+			for (int i = 0; i < name.length() && i < header.length; i++) {
+				header[i] = (byte) name.charAt(i);
+			}
+			stream.write(header);
+			stream.write(value[0]);
+			stream.write(value[1]);
+		} finally {
+			stream.close();
+		}
+		if (!partial.renameTo(file)) {
+			throw new IOException("cannot rename " + partial + " to " + file);
+		}
+		tablebases.forget(material);
+		value = null;
+		counter = null;
+		exit = null;
+		if (out != null) {
+			out.println(name + ": " + counts[Tablebases.WIN >>> 6] + " wins, " + counts[Tablebases.DRAW >>> 6] + " draws, " +
+					counts[Tablebases.LOSS >>> 6] + " losses, longest mate " + longest + " moves, " +
+					((System.nanoTime() - startNanos) / 1000000L) + " ms");
+			out.flush();
+		}
+	}
+
+}
@@ -0,0 +1,300 @@
+package com.ija.chess;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+// endgame tablebases: for every position of a small set of material (up to MAX_PIECES
+// pieces, Kings included) the result with best play for the side to move.  The tables
+// are made by TablebaseGenerator; each one is a file "<material>.tb" in the tablebase
+// directory (e.g. KQK.tb, KBNK.tb) with a 16 byte header ("CHTB", version, material name)
+// followed by one byte per position, first all positions with White to move, then all
+// with Black to move.  A position's index is the squares of its pieces (6 bits each) in
+// the order: White King, other White pieces, Black King, other Black pieces, the others
+// ordered Queen, Rook, Bishop, Knight, Pawn.
+// A result byte holds the outcome in its top two bits (DRAW, WIN, LOSS, INVALID for an
+// impossible position) and the distance to mate in moves in the low six bits.  Only one
+// color of each material pairing is stored (the stronger side as White); positions of
+// the other color are looked up with the colors swapped and the board mirrored.
+// The tables follow this app's rules: Pawns promote to Queen, there is no en passant,
+// and castling is not possible (probe() answers NOT_FOUND while castling rights remain).
+// Tables are memory-mapped on first use; probing does not allocate and may be done from
+// several threads.
+
+public class Tablebases {
+
+	public static final int MAX_PIECES = 4;
+	public static final int NOT_FOUND = -1;
+
+	public static final int DRAW = 0x00;
+	public static final int WIN = 0x40;
+	public static final int LOSS = 0x80;
+	public static final int INVALID = 0xC0;
+	static final int OUTCOME_MASK = 0xC0;
+	static final int DISTANCE_MASK = 0x3F;
+
+	static final byte[] MAGIC = {'C', 'H', 'T', 'B'};
+	static final int VERSION = 1;
+	static final int HEADER_SIZE = 16;
+
+	// material index: count (0..2) of each non-King piece type per color as base 3 digits
+	static final int MATERIAL_COUNT = 59049;
+	private static final int BLACK_MATERIAL = 243;
+	private static final int[] MATERIAL_VALUES = {0, 9, 5, 3, 3, 1};
+	private static final ByteBuffer MISSING = ByteBuffer.allocate(0);
+
+	private final File directory;
+	private final AtomicReferenceArray<ByteBuffer> tables = new AtomicReferenceArray<ByteBuffer>(MATERIAL_COUNT);
+
+	public Tablebases(File directory) {
+		this.directory = directory;
+	}
+
+	public File getDirectory() {
+		return directory;
+	}
+
+	public static int outcome(int result) {
+		// DRAW, WIN, LOSS or INVALID (for the side to move) of a probe result
+		return result & OUTCOME_MASK;
+	}
+
+	public static int distanceToMateMoves(int result) {
+		// moves until mate (0 for a draw; 0 with LOSS means the side to move is mated now)
+		return result & DISTANCE_MASK;
+	}
+
+	public static int distanceToMatePlies(int result) {
+		// half moves until mate: a win in n moves is 2n - 1 plies, a loss in n moves 2n plies
+		int moves = result & DISTANCE_MASK;
+		switch (result & OUTCOME_MASK) {
+		case WIN: return 2 * moves - 1;
+		case LOSS: return 2 * moves;
+		default: return 0;
+		}
+	}
+
+	public static String describe(int result, ChessPieceColor sideToMove) {
+		// e.g. "White wins in 12 moves" for a probe result
+		ChessPieceColor opponent = sideToMove.equals(ChessPieceColor.WHITE) ? ChessPieceColor.BLACK : ChessPieceColor.WHITE;
+		int moves = distanceToMateMoves(result);
+		String distance = " wins in " + moves + ((moves == 1) ? " move" : " moves");
+		switch (outcome(result)) {
+		case WIN: return sideToMove + distance;
+		case LOSS: return (moves == 0) ? sideToMove + " is checkmated" : opponent + distance;
+		case DRAW: return "Draw";
+		default: return "Impossible position";
+		}
+	}
+
+	static long packPiece(int square, int type, int color) {
+		// one piece of a packed piece set: square (6 bits), type ordinal (3 bits), color ordinal (1 bit)
+		return square | (type << 6) | (color << 9);
+	}
+
+	static int pieceSquare(long pieces, int i) {
+		return (int) (pieces >>> (10 * i)) & 63;
+	}
+
+	static int pieceType(long pieces, int i) {
+		return (int) (pieces >>> (10 * i + 6)) & 7;
+	}
+
+	static int pieceColor(long pieces, int i) {
+		return (int) (pieces >>> (10 * i + 9)) & 1;
+	}
+
+	public int probe(ChessPosition position) {
+		// result for the side to move (see outcome/distanceToMate...), or NOT_FOUND if the
+		// position has too many pieces, castling rights, or no table is available
+		int white = position.pieceCount(ChessPieceColor.WHITE);
+		int n = white + position.pieceCount(ChessPieceColor.BLACK);
+		if (n > MAX_PIECES || position.getCastlingRights() != 0) {
+			return NOT_FOUND;
+		}
+		long pieces = 0L;
+		for (int i = 0; i < n; i++) {
+			ChessPieceColor color = (i < white) ? ChessPieceColor.WHITE : ChessPieceColor.BLACK;
+			int square = position.pieceSquare(color, (i < white) ? i : i - white);
+			pieces |= packPiece(square, position.pieceAt(square).getType().ordinal(), color.ordinal()) << (10 * i);
+		}
+		return probe(pieces, n, position.getSideToMove().ordinal());
+	}
+
+	int probe(long pieces, int n, int sideToMove) {
+		// result for a packed piece set (see packPiece) with the given side (color ordinal) to move
+		int material = materialIndex(pieces, n);
+		if (material < 0) {
+			return NOT_FOUND;
+		}
+		if (material == 0) {
+			// bare Kings
+			return DRAW;
+		}
+		boolean flip = !isCanonical(material);
+		if (flip) {
+			material = flipMaterial(material);
+		}
+		ByteBuffer table = table(material);
+		if (table == MISSING) {
+			return NOT_FOUND;
+		}
+		int index = 0;
+		for (int c = 0; c < 2; c++) {
+			int color = flip ? 1 - c : c;
+			for (int type = 0; type < 6; type++) {
+				for (int i = 0; i < n; i++) {
+					if (pieceType(pieces, i) == type && pieceColor(pieces, i) == color) {
+						index = (index << 6) | (flip ? pieceSquare(pieces, i) ^ 56 : pieceSquare(pieces, i));
+					}
+				}
+			}
+		}
+		int side = flip ? 1 - sideToMove : sideToMove;
+		return table.get(HEADER_SIZE + (side << (6 * n)) + index) & 0xFF;
+	}
+
+	private ByteBuffer table(int material) {
+		ByteBuffer table = tables.get(material);
+		if (table == null) {
+			table = load(material);
+			tables.compareAndSet(material, null, table);
+			table = tables.get(material);
+		}
+		return table;
+	}
+
+	void forget(int material) {
+		// drop a cached lookup (used by the generator after it writes a new table)
+		tables.set(material, null);
+	}
+
+	private ByteBuffer load(int material) {
+		File file = new File(directory, materialName(material) + ".tb");
+		if (!file.isFile()) {
+			return MISSING;
+		}
+		try {
+			FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+			try {
+				MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+				int n = materialPieces(material);
+				for (int i = 0; i < MAGIC.length; i++) {
+					if (mapped.get(i) != MAGIC[i]) {
+						return MISSING;
+					}
+				}
+				if (mapped.getInt(4) != VERSION || channel.size() != HEADER_SIZE + (2L << (6 * n))) {
+					return MISSING;
+				}
+				return mapped;
+			} finally {
+				channel.close();
+			}
+		} catch (IOException ex) {
+			return MISSING;
+		}
+	}
+
+	static int materialIndex(long pieces, int n) {
+		// material index of a packed piece set, or -1 if it is not exactly one King per color
+		// and at most two of every other piece
+		int material = 0;
+		int kings = 0;
+		for (int i = 0; i < n; i++) {
+			int type = pieceType(pieces, i);
+			if (type == 0) {
+				kings += (pieceColor(pieces, i) == 0) ? 1 : 16;
+				continue;
+			}
+			int digit = 1;
+			for (int k = 1; k < type; k++) {
+				digit *= 3;
+			}
+			if (pieceColor(pieces, i) == 1) {
+				digit *= BLACK_MATERIAL;
+			}
+			if ((material / digit) % 3 == 2) {
+				return -1;
+			}
+			material += digit;
+		}
+		return (kings == 17) ? material : -1;
+	}
+
+	static int materialCount(int material, int color, int type) {
+		int digits = (color == 0) ? material % BLACK_MATERIAL : material / BLACK_MATERIAL;
+		for (int k = 1; k < type; k++) {
+			digits /= 3;
+		}
+		return digits % 3;
+	}
+
+	static int materialPieces(int material) {
+		int n = 2;
+		for (int color = 0; color < 2; color++) {
+			for (int type = 1; type < 6; type++) {
+				n += materialCount(material, color, type);
+			}
+		}
+		return n;
+	}
+
+	static boolean isCanonical(int material) {
+		// tables are stored with the stronger side (by material value) as White
+		int whiteValue = 0;
+		int blackValue = 0;
+		for (int type = 1; type < 6; type++) {
+			whiteValue += materialCount(material, 0, type) * MATERIAL_VALUES[type];
+			blackValue += materialCount(material, 1, type) * MATERIAL_VALUES[type];
+		}
+		return whiteValue > blackValue ||
+				(whiteValue == blackValue && material % BLACK_MATERIAL >= material / BLACK_MATERIAL);
+	}
+
+	static int flipMaterial(int material) {
+		return (material % BLACK_MATERIAL) * BLACK_MATERIAL + material / BLACK_MATERIAL;
+	}
+
+	static String materialName(int material) {
+		// e.g. "KBNK": each side's King followed by its other pieces (Q R B N P)
+		StringBuilder name = new StringBuilder();
+		String letters = "KQRBNP";
+		for (int color = 0; color < 2; color++) {
+			name.append('K');
+			for (int type = 1; type < 6; type++) {
+				for (int k = 0; k < materialCount(material, color, type); k++) {
+					name.append(letters.charAt(type));
+				}
+			}
+		}
+		return name.toString();
+	}
+
+	static int parseMaterial(String name) {
+		// material index of a name such as "KQK" or "KRKP", or -1 if it is not valid
+		String letters = "KQRBNP";
+		long pieces = 0L;
+		int n = 0;
+		int color = -1;
+		for (int i = 0; i < name.length(); i++) {
+			int type = letters.indexOf(Character.toUpperCase(name.charAt(i)));
+			if (type < 0 || n >= MAX_PIECES || (i == 0 && type != 0)) {
+				return -1;
+			}
+			if (type == 0) {
+				color++;
+			}
+			if (color > 1) {
+				return -1;
+			}
+			pieces |= packPiece(0, type, color) << (10 * n++);
+		}
+		return (color == 1) ? materialIndex(pieces, n) : -1;
+	}
+
+}
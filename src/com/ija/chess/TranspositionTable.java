@@ -0,0 +1,85 @@
+package com.ija.chess;
+
+import java.util.Arrays;
+
+// fixed-size hash table of search results keyed by ChessPosition.positionKey(), shared
+// without locks by all search threads.  Each entry is two longs: the packed data and
+// the position key XOR the data.  A probe only accepts an entry whose two halves agree,
+// so an entry torn by two threads writing at once reads as a miss instead of as a
+// wrong result.
+//   data bits 0-17  best move (MoveCode)
+//   data bits 18-37 score (signed)
+//   data bits 38-45 depth
+//   data bits 46-47 bound type (EXACT, LOWER_BOUND, UPPER_BOUND)
+
+public class TranspositionTable {
+	
+	public static final long MISS = -1L;
+	public static final int EXACT = 0;
+	public static final int LOWER_BOUND = 1;
+	public static final int UPPER_BOUND = 2;
+	
+	public static final int DEFAULT_SIZE_BITS = 20;
+	
+	private static final int MOVE_BITS = 18;
+	private static final int SCORE_BITS = 20;
+	private static final int DEPTH_BITS = 8;
+	
+	private final long[] keys;
+	private final long[] data;
+	private final int mask;
+	
+	public TranspositionTable() {
+		this(DEFAULT_SIZE_BITS);
+	}
+	
+	public TranspositionTable(int sizeBits) {
+		// table with 2^sizeBits entries (16 bytes each)
+		this.keys = new long[1 << sizeBits];
+		this.data = new long[1 << sizeBits];
+		this.mask = (1 << sizeBits) - 1;
+	}
+	
+	public long probe(long key) {
+		// packed data stored for the position key or MISS
+		int index = (int) key & mask;
+		long entryData = data[index];
+		long entryKey = keys[index];
+		return ((entryKey ^ entryData) == key && entryData != 0L) ? entryData : MISS;
+	}
+	
+	public void store(long key, int move, int score, int depth, int bound) {
+		long entryData = (move & ((1L << MOVE_BITS) - 1)) |
+				((score & ((1L << SCORE_BITS) - 1)) << MOVE_BITS) |
+				((long) (depth & ((1 << DEPTH_BITS) - 1)) << (MOVE_BITS + SCORE_BITS)) |
+				((long) bound << (MOVE_BITS + SCORE_BITS + DEPTH_BITS)) |
+				// keep an entry with an empty move at depth 0 distinguishable from an unused slot
+				(1L << 63);
+		int index = (int) key & mask;
+		data[index] = entryData;
+		keys[index] = key ^ entryData;
+	}
+	
+	public void clear() {
+		Arrays.fill(keys, 0L);
+		Arrays.fill(data, 0L);
+	}
+	
+	public static int move(long entry) {
+		return (int) (entry & ((1L << MOVE_BITS) - 1));
+	}
+	
+	public static int score(long entry) {
+		// sign-extend the 20-bit score
+		return (int) ((entry << (64 - MOVE_BITS - SCORE_BITS)) >> (64 - SCORE_BITS));
+	}
+	
+	public static int depth(long entry) {
+		return (int) ((entry >>> (MOVE_BITS + SCORE_BITS)) & ((1 << DEPTH_BITS) - 1));
+	}
+	
+	public static int bound(long entry) {
+		return (int) ((entry >>> (MOVE_BITS + SCORE_BITS + DEPTH_BITS)) & 0x3);
+	}
+
+}
@@ -0,0 +1,337 @@
+package com.ija.chess;
+
+import java.awt.Point;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.util.HashMap;
+import java.util.concurrent.CountDownLatch;
+
+// the UCI (Universal Chess Interface) front end, for chess GUIs and tournament managers.
+// Commands are read line by line:
+//   uci | isready | ucinewgame | setoption name Threads value <n>
+//   position (startpos | fen <fen>) [moves <move>...]
+//   go [wtime <ms>] [btime <ms>] [winc <ms>] [binc <ms>] [movestogo <n>]
+//      [movetime <ms>] [depth <n>] [infinite]
+//   stop | quit
+// A search runs on its own thread, so the reader keeps answering commands (e.g.
+// isready) while it searches.  "stop" makes the engine give up at its next node and
+// the best move found so far is reported before the next command is read.  Moves are
+// written in coordinate notation (e2e4, e7e8q): files a-h are x 0-7 and ranks 1-8 are
+// y 0-7.  The app's rules apply: there is no en passant and Pawns promote to Queen only.
+
+public class UciProtocol {
+
+	private static final String ENGINE_NAME = "CommandLineChess";
+	private static final int MAX_THREADS = 64;
+	// without movestogo the remaining time is shared out as if this many moves were left
+	private static final int DEFAULT_MOVES_TO_GO = 30;
+
+	private final PrintStream out;
+	private final TranspositionTable table = new TranspositionTable();
+	private final MoveBuffer legalMoves = new MoveBuffer();
+	private int threads;
+	private OpeningBook book = null;
+	private Tablebases tablebases = null;
+	private ChessPosition position = ChessFen.parse(ChessFen.INITIAL_POSITION);
+
+	// the running search (if any)
+	private ChessEngine engine = null;
+	private Thread searchThread = null;
+	private CountDownLatch stopSignal = null;
+
+	public UciProtocol(PrintStream out, int threads) {
+		this.out = out;
+		this.threads = Math.max(1, Math.min(threads, MAX_THREADS));
+	}
+
+	public void setOpeningBook(OpeningBook book) {
+		this.book = book;
+	}
+
+	public void setTablebases(Tablebases tablebases) {
+		this.tablebases = tablebases;
+	}
+
+	public void run(InputStream in) throws IOException {
+		// read commands until "quit" or the end of the input
+		BufferedReader reader = new BufferedReader(new InputStreamReader(in));
+		String line;
+		while ((line = reader.readLine()) != null) {
+			if (!handle(line)) {
+				break;
+			}
+		}
+		stopSearch();
+	}
+
+	public boolean handle(String line) {
+		// carry out one command; false for "quit".  Unknown commands are ignored, as UCI asks.
+		String[] tokens = line.trim().split("\\s+");
+		String command = tokens[0];
+		if (command.equals("uci")) {
+			send("id name " + ENGINE_NAME);
+			send("option name Threads type spin default " + threads + " min 1 max " + MAX_THREADS);
+			send("uciok");
+		}
+		else if (command.equals("isready")) {
+			send("readyok");
+		}
+		else if (command.equals("ucinewgame")) {
+			stopSearch();
+			table.clear();
+			position = ChessFen.parse(ChessFen.INITIAL_POSITION);
+		}
+		else if (command.equals("setoption")) {
+			setOption(tokens);
+		}
+		else if (command.equals("position")) {
+			stopSearch();
+			setPosition(tokens);
+		}
+		else if (command.equals("go")) {
+			stopSearch();
+			go(tokens);
+		}
+		else if (command.equals("stop")) {
+			stopSearch();
+		}
+		else if (command.equals("quit")) {
+			return false;
+		}
+		return true;
+	}
+
+	private void setOption(String[] tokens) {
+		// setoption name Threads value <n>
+		if (tokens.length == 5 && tokens[1].equals("name") && tokens[2].equalsIgnoreCase("Threads") && tokens[3].equals("value")) {
+			try {
+				threads = Math.max(1, Math.min(Integer.parseInt(tokens[4]), MAX_THREADS));
+			} catch (NumberFormatException ex) {
+				send("info string invalid Threads value " + tokens[4]);
+			}
+		}
+	}
+
+	private void setPosition(String[] tokens) {
+		// position (startpos | fen <six fields>) [moves ...]; the moves are played as far as they are legal
+		int i = 1;
+		ChessPosition next;
+		if (tokens.length > 1 && tokens[1].equals("startpos")) {
+			next = ChessFen.parse(ChessFen.INITIAL_POSITION);
+			i = 2;
+		}
+		else if (tokens.length > 1 && tokens[1].equals("fen")) {
+			StringBuilder fen = new StringBuilder();
+			for (i = 2; i < tokens.length && !tokens[i].equals("moves"); i++) {
+				fen.append(tokens[i]).append(' ');
+			}
+			try {
+				next = ChessFen.parse(fen.toString().trim());
+			} catch (IllegalArgumentException ex) {
+				send("info string invalid position: " + ex.getMessage());
+				return;
+			}
+		}
+		else {
+			send("info string position needs startpos or fen");
+			return;
+		}
+		if (i < tokens.length && tokens[i].equals("moves")) {
+			for (i++; i < tokens.length; i++) {
+				int move = parseMove(next, tokens[i]);
+				if (move == ChessEngine.NO_MOVE) {
+					send("info string illegal move " + tokens[i]);
+					break;
+				}
+				next.makeMove(move);
+				next.clearUndoHistory();
+			}
+		}
+		position = next;
+	}
+
+	private void go(String[] tokens) {
+		// start a search of the current position on the search thread
+		long whiteTime = -1;
+		long blackTime = -1;
+		long whiteIncrement = 0;
+		long blackIncrement = 0;
+		int movesToGo = DEFAULT_MOVES_TO_GO;
+		long moveTime = -1;
+		int depth = ChessEngine.MAX_DEPTH;
+		boolean infinite = false;
+		try {
+			for (int i = 1; i < tokens.length; i++) {
+				String name = tokens[i];
+				if (name.equals("infinite")) {
+					infinite = true;
+				}
+				else if (i + 1 < tokens.length) {
+					if (name.equals("wtime")) {
+						whiteTime = Long.parseLong(tokens[++i]);
+					} else if (name.equals("btime")) {
+						blackTime = Long.parseLong(tokens[++i]);
+					} else if (name.equals("winc")) {
+						whiteIncrement = Long.parseLong(tokens[++i]);
+					} else if (name.equals("binc")) {
+						blackIncrement = Long.parseLong(tokens[++i]);
+					} else if (name.equals("movestogo")) {
+						movesToGo = Math.max(1, Integer.parseInt(tokens[++i]));
+					} else if (name.equals("movetime")) {
+						moveTime = Math.max(1, Long.parseLong(tokens[++i]));
+					} else if (name.equals("depth")) {
+						depth = Math.max(1, Math.min(Integer.parseInt(tokens[++i]), ChessEngine.MAX_DEPTH));
+					}
+				}
+			}
+		} catch (NumberFormatException ex) {
+			send("info string invalid go parameter: " + ex.getMessage());
+			send("bestmove 0000");
+			return;
+		}
+		boolean white = position.getSideToMove().equals(ChessPieceColor.WHITE);
+		long clock = white ? whiteTime : blackTime;
+		long budget = 0;
+		if (moveTime > 0) {
+			budget = moveTime;
+		}
+		else if (clock >= 0 && !infinite) {
+			budget = timeBudget(clock, white ? whiteIncrement : blackIncrement, movesToGo);
+		}
+		// without a time limit or depth the search goes on until "stop"
+		boolean untilStopped = infinite || (budget == 0 && depth == ChessEngine.MAX_DEPTH);
+
+		final ChessEngine searchEngine = new ChessEngine(position.duplicate(), table);
+		searchEngine.setThreads(threads);
+		searchEngine.setOpeningBook(book);
+		searchEngine.setTablebases(tablebases);
+		final long searchBudget = budget;
+		final int searchDepth = depth;
+		final CountDownLatch searchStopSignal = untilStopped ? new CountDownLatch(1) : null;
+		Thread thread = new Thread(new Runnable() {
+			public void run() {
+				long startNanos = System.nanoTime();
+				int move = searchEngine.findBestMove(searchBudget, searchDepth);
+				report(searchEngine, System.nanoTime() - startNanos);
+				if (searchStopSignal != null) {
+					// UCI sends the best move of an unlimited search only once it is stopped
+					try {
+						searchStopSignal.await();
+					} catch (InterruptedException ex) {
+						Thread.currentThread().interrupt();
+					}
+				}
+				send("bestmove " + (move == ChessEngine.NO_MOVE ? "0000" : formatMove(move)));
+			}
+		}, "uci-search");
+		thread.setDaemon(true);
+		engine = searchEngine;
+		stopSignal = searchStopSignal;
+		searchThread = thread;
+		thread.start();
+	}
+
+	private void stopSearch() {
+		// stop the running search (if any) and wait until it has sent its best move.  A search
+		// that has not started yet keeps the request and stops at its first node.
+		Thread thread = searchThread;
+		if (thread == null) {
+			return;
+		}
+		if (stopSignal != null) {
+			stopSignal.countDown();
+		}
+		engine.stop();
+		try {
+			thread.join();
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			return;
+		}
+		searchThread = null;
+		engine = null;
+		stopSignal = null;
+	}
+
+	private void report(ChessEngine searchEngine, long nanos) {
+		// one info line with the result of the deepest completed iteration
+		int depth = searchEngine.getCompletedDepth();
+		if (depth == 0) {
+			return;
+		}
+		int score = searchEngine.getBestScore();
+		String scoreText;
+		if (Math.abs(score) >= ChessEngine.MATE_SCORE - ChessEngine.MAX_DEPTH) {
+			// mate in moves (negative when the side to move is mated), from the distance in plies
+			int plies = ChessEngine.MATE_SCORE - Math.abs(score);
+			scoreText = "mate " + ((score > 0) ? (plies + 1) / 2 : -(plies / 2));
+		}
+		else {
+			scoreText = "cp " + score;
+		}
+		long millis = nanos / 1000000L;
+		long nodes = searchEngine.getNodes();
+		send("info depth " + depth + " score " + scoreText + " nodes " + nodes + " time " + millis +
+				" nps " + (nodes * 1000L / Math.max(1L, millis)));
+	}
+
+	private static long timeBudget(long clock, long increment, int movesToGo) {
+		// an even share of the clock plus most of the increment, but never more than half the clock
+		long share = clock / movesToGo + increment * 3 / 4;
+		return Math.max(1L, Math.min(share, clock / 2));
+	}
+
+	private int parseMove(ChessPosition on, String text) {
+		// the legal move written as text (e2e4, e7e8q) in the position, or NO_MOVE
+		if (text.length() < 4 || text.length() > 5) {
+			return ChessEngine.NO_MOVE;
+		}
+		int from = parseSquare(text.charAt(0), text.charAt(1));
+		int to = parseSquare(text.charAt(2), text.charAt(3));
+		if (from == ChessPosition.NO_SQUARE || to == ChessPosition.NO_SQUARE) {
+			return ChessEngine.NO_MOVE;
+		}
+		new ChessMove(on, new HashMap<ChessPiece, Point>(), on.getSideToMove()).generateLegalMoves(legalMoves);
+		for (int i = 0; i < legalMoves.size(); i++) {
+			int move = legalMoves.get(i);
+			if (MoveCode.from(move) == from && MoveCode.to(move) == to) {
+				// a promotion is always to a Queen; any other piece letter is refused
+				if (text.length() == 5 && (!MoveCode.isPromotion(move) || text.charAt(4) != 'q')) {
+					return ChessEngine.NO_MOVE;
+				}
+				return move;
+			}
+		}
+		return ChessEngine.NO_MOVE;
+	}
+
+	private static int parseSquare(char file, char rank) {
+		if (file < 'a' || file > 'h' || rank < '1' || rank > '8') {
+			return ChessPosition.NO_SQUARE;
+		}
+		return ChessPosition.square(file - 'a', rank - '1');
+	}
+
+	static String formatMove(int move) {
+		// coordinate notation, e.g. e2e4 or e7e8q
+		StringBuilder text = new StringBuilder(5);
+		text.append((char) ('a' + ChessPosition.fileOf(MoveCode.from(move))));
+		text.append((char) ('1' + ChessPosition.rankOf(MoveCode.from(move))));
+		text.append((char) ('a' + ChessPosition.fileOf(MoveCode.to(move))));
+		text.append((char) ('1' + ChessPosition.rankOf(MoveCode.to(move))));
+		if (MoveCode.isPromotion(move)) {
+			text.append('q');
+		}
+		return text.toString();
+	}
+
+	private synchronized void send(String line) {
+		// both the reader and the search thread answer; each line is written whole and flushed at once
+		out.println(line);
+		out.flush();
+	}
+
+}